@@ -0,0 +1,67 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.FieldMapping;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.mapping.MappingCheckers;
+import net.vitusfox.creativereobfuscator.mapping.MethodMapping;
+
+/**
+ * Regex-based TSRG parser which was used by {@link Mapping} before {@link net.vitusfox.creativereobfuscator.mapping.TsrgReader}.
+ * Kept only as baseline for benchmarks
+ */
+public class LegacyTsrgParser {
+
+    public static Mapping parse(String tsrg, int flags) {
+        Mapping mapping = new Mapping("", flags);
+
+        ClassMapping.Builder builder = null;
+        for (String s : tsrg.split("\n")) {
+            if (s.trim().isEmpty()) {
+                continue;
+            }
+
+            // Class definition
+            if (!s.startsWith("\t")) {
+                if (MappingCheckers.isClass(s)) {
+                    String[] split = s.split(" ");
+
+                    if (split.length != 2) {
+                        throw new IllegalStateException("Invalid size of splitted class definer! Got: " + split.length + ", needs 2");
+                    }
+
+                    if (builder != null) {
+                        mapping.add(builder.build());
+                    }
+
+                    builder = mapping.getBuilder(split[0], split[1]);
+
+                    continue;
+                }
+            }
+
+            if (builder == null) {
+                throw new IllegalStateException("ClassBuilder is not defined on scope somewhere with line " + s);
+            }
+
+            // Method and fields definition
+            MappingCheckers.Type type = MappingCheckers.getType(s);
+
+            if (type == MappingCheckers.Type.NONE) {
+                throw new IllegalStateException("Unknown type of string " + s);
+            }
+
+            if (type == MappingCheckers.Type.FIELD) {
+                builder.addField(new FieldMapping(s));
+            } else if (type == MappingCheckers.Type.METHOD) {
+                builder.addMethod(new MethodMapping(s));
+            }
+        }
+
+        if (builder != null) {
+            mapping.add(builder.build());
+        }
+
+        return mapping;
+    }
+}
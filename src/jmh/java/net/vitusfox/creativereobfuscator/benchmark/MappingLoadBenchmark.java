@@ -0,0 +1,56 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.mapping.BinaryMapping;
+import net.vitusfox.creativereobfuscator.mapping.LoadState;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady state cache-hit path of getReobfuscationMapping, cold start is measured by {@link MappingStartupBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingLoadBenchmark {
+
+    /**
+     * true - loaded from binary cache, false - binary cache is removed before every call and TSRG is parsed
+     */
+    @Param({"true", "false"})
+    public boolean binaryCache;
+
+    private File saveFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        saveFile = File.createTempFile("mapping-load", ".tsrg");
+        SyntheticClasses.loadMapping().save(saveFile);
+        Mapping.getReobfuscationMapping(saveFile);
+    }
+
+    @Setup(Level.Invocation)
+    public void removeCache() {
+        if (!binaryCache) {
+            BinaryMapping.getCacheFile(saveFile).delete();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BinaryMapping.getCacheFile(saveFile).delete();
+        saveFile.delete();
+    }
+
+    @Benchmark
+    public Pair<LoadState, Mapping> getReobfuscationMapping() throws IOException {
+        return Mapping.getReobfuscationMapping(saveFile);
+    }
+}
@@ -0,0 +1,98 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.mapping.MappingMerger;
+import net.vitusfox.creativereobfuscator.mapping.convert.LegacyMappingConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stages of mapping creation from bundled Mojang and MCP mappings
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MappingPipelineBenchmark {
+
+    private byte[] serverMappings;
+    private byte[] clientMappings;
+
+    private LegacyMappingConverter converter;
+    private Mapping legacy;
+    private Mapping mcp;
+    private Mapping joined;
+    private File saveFile;
+
+    @Setup
+    public void setup() throws IOException {
+        serverMappings = readResource("/server_mappings.txt");
+        clientMappings = readResource("/client_mappings.txt");
+
+        converter = new LegacyMappingConverter(new String(serverMappings, StandardCharsets.UTF_8),
+                new String(clientMappings, StandardCharsets.UTF_8));
+        legacy = toMapping();
+        mcp = new Mapping(new String(readResource("/mcp_mappings.tsrg"), StandardCharsets.UTF_8), Mapping.REVERSED_CLASSES)
+                .deobfuscateSignatures();
+        joined = merge();
+
+        saveFile = File.createTempFile("mapping-save", ".tsrg");
+    }
+
+    @TearDown
+    public void tearDown() {
+        saveFile.delete();
+    }
+
+    private static byte[] readResource(String path) throws IOException {
+        try (InputStream is = MappingPipelineBenchmark.class.getResourceAsStream(path)) {
+            if (is == null) {
+                throw new IllegalStateException("Resource " + path + " is not found");
+            }
+
+            return Util.readFully(is);
+        }
+    }
+
+    /**
+     * Mojang mappings to TSRG text
+     */
+    @Benchmark
+    public String convertAndMerge() {
+        return converter.convertAndMerge();
+    }
+
+    /**
+     * Mojang mappings streamed into mapping
+     */
+    @Benchmark
+    public Mapping toMapping() throws IOException {
+        return LegacyMappingConverter.toMapping(Mapping.REVERSED_CLASSES,
+                new ByteArrayInputStream(serverMappings), new ByteArrayInputStream(clientMappings));
+    }
+
+    @Benchmark
+    public Mapping merge() {
+        return new MappingMerger(legacy, mcp).merge(0);
+    }
+
+    @Benchmark
+    public Mapping anonymizeClasses() {
+        return joined.anonymizeClasses();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        joined.save(saveFile);
+        return saveFile;
+    }
+}
@@ -0,0 +1,79 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.BinaryMapping;
+import net.vitusfox.creativereobfuscator.mapping.LoadState;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost: every measurement is the first call in a fresh JVM, without JIT warm-up
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class MappingStartupBenchmark {
+
+    /**
+     * Initialization of Mapping class alone. Must not load any bundled resources
+     */
+    @Benchmark
+    public Class<?> touchMapping() throws ClassNotFoundException {
+        return Class.forName("net.vitusfox.creativereobfuscator.mapping.Mapping", true,
+                MappingStartupBenchmark.class.getClassLoader());
+    }
+
+    /**
+     * Cache-hit path of getReobfuscationMapping: saved mapping file already exists
+     */
+    @Benchmark
+    public Pair<LoadState, Mapping> cacheHit(SavedMapping saved) throws IOException {
+        return Mapping.getReobfuscationMapping(saved.file);
+    }
+
+    @State(Scope.Benchmark)
+    public static class SavedMapping {
+
+        /**
+         * true - saved TSRG and its binary cache exist, false - only saved TSRG exists
+         */
+        @Param({"true", "false"})
+        public boolean binaryCache;
+
+        private File file;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = File.createTempFile("mapping-startup", ".tsrg");
+
+            // Bundled MCP mapping is used as saved mapping file
+            try (InputStream is = MappingStartupBenchmark.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+                if (is == null) {
+                    throw new IllegalStateException("mcp_mappings.tsrg is not found");
+                }
+
+                Files.write(file.toPath(), Util.readFully(is));
+            }
+
+            if (binaryCache) {
+                // First load creates binary cache
+                Mapping.getReobfuscationMapping(file);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BinaryMapping.getCacheFile(file).delete();
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method lookups by (name, signature): HashMap with Pair keys against {@link ClassMapping#getMethodByName}.
+ * Run with gc profiler (default in build.gradle) to compare allocation rate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodLookupBenchmark {
+
+    private static final int LOOKUPS = 10_000;
+
+    private ClassMapping[] owners;
+    private HashMap<Pair<String, String>, String>[] pairMaps;
+    private String[] names;
+    private String[] signatures;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        Mapping mapping = SyntheticClasses.loadMapping();
+
+        List<ClassMapping> classes = new ArrayList<>();
+        for (ClassMapping classMapping : mapping.getClasses().values()) {
+            if (!classMapping.getMethods().isEmpty()) {
+                classes.add(classMapping);
+            }
+        }
+        classes.sort((a, b) -> a.getObfuscatedClass().compareTo(b.getObfuscatedClass()));
+
+        Random random = new Random(42);
+        owners = new ClassMapping[LOOKUPS];
+        pairMaps = new HashMap[LOOKUPS];
+        names = new String[LOOKUPS];
+        signatures = new String[LOOKUPS];
+
+        HashMap<ClassMapping, HashMap<Pair<String, String>, String>> copies = new HashMap<>();
+        for (int i = 0; i < LOOKUPS; i++) {
+            ClassMapping owner = classes.get(random.nextInt(classes.size()));
+            List<Pair<String, String>> keys = new ArrayList<>(owner.getMethods().keySet());
+            Pair<String, String> key = keys.get(random.nextInt(keys.size()));
+
+            owners[i] = owner;
+            pairMaps[i] = copies.computeIfAbsent(owner, o -> new HashMap<>(o.getMethods()));
+            // Copies, as names come from bytecode in real reobfuscation and are not the same instances
+            names[i] = new String(key.getFirst());
+            signatures[i] = random.nextInt(4) == 0 ? key.getSecond() + "x" : new String(key.getSecond());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void pairKeys(Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(pairMaps[i].get(new Pair<>(names[i], signatures[i])));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void methodTable(Blackhole blackhole) {
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(owners[i].getMethodByName(names[i], signatures[i]));
+        }
+    }
+}
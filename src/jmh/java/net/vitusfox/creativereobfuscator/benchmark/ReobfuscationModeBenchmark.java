@@ -0,0 +1,54 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassReobfuscator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modes of {@link ClassReobfuscator}: ClassNode tree or single-pass streaming, computed or preserved frames
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReobfuscationModeBenchmark {
+
+    @Param({"tree", "streaming", "tree-preserve-frames", "streaming-preserve-frames"})
+    public String mode;
+
+    private List<byte[]> classes;
+    private ClassReobfuscator reobfuscator;
+
+    @Setup
+    public void setup() throws IOException {
+        Mapping mapping = SyntheticClasses.loadMapping();
+        classes = SyntheticClasses.generate(mapping, 100, 10, 20, 42);
+        int flags = 0;
+        if (mode.startsWith("streaming")) {
+            flags |= ClassReobfuscator.STREAMING;
+        }
+
+        if (mode.endsWith("preserve-frames")) {
+            flags |= ClassReobfuscator.PRESERVE_FRAMES;
+        }
+
+        reobfuscator = new ClassReobfuscator(mapping, flags);
+    }
+
+    /**
+     * Reobfuscation of 100 classes
+     */
+    @Benchmark
+    public void reobfuscate(Blackhole blackhole) {
+        for (byte[] bytecode : classes) {
+            blackhole.consume(reobfuscator.reobfuscate(bytecode));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates mod-like classes which call methods and read fields of mapped classes
+ */
+public class SyntheticClasses {
+
+    /**
+     * Bundled MCP mapping, loaded so that class names are kept and obfuscated member names are remapped to SRG names
+     */
+    public static Mapping loadMapping() throws IOException {
+        try (InputStream is = SyntheticClasses.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            if (is == null) {
+                throw new IllegalStateException("mcp_mappings.tsrg is not found");
+            }
+
+            return new Mapping(new String(Util.readFully(is), StandardCharsets.UTF_8), 0);
+        }
+    }
+
+    /**
+     * @param mapping Mapping with referenced classes
+     * @param count Count of classes
+     * @param methods Count of methods in every class
+     * @param calls Count of mapped member references in every method
+     * @param seed Random seed, the same seed gives the same classes
+     */
+    public static List<byte[]> generate(Mapping mapping, int count, int methods, int calls, long seed) {
+        Random random = new Random(seed);
+
+        List<Pair<String, String>> fields = new ArrayList<>(); // Owner -> name
+        List<Pair<String, Pair<String, String>>> invokes = new ArrayList<>(); // Owner -> name, descriptor
+        for (ClassMapping classMapping : mapping.getClasses().values()) {
+            String owner = classMapping.getObfuscatedClass();
+
+            for (String field : classMapping.getFields().keySet()) {
+                fields.add(new Pair<>(owner, field));
+            }
+
+            for (Pair<String, String> method : classMapping.getMethods().keySet()) {
+                invokes.add(new Pair<>(owner, method));
+            }
+        }
+
+        // Stable order for the same seed
+        fields.sort((a, b) -> (a.getFirst() + a.getSecond()).compareTo(b.getFirst() + b.getSecond()));
+        invokes.sort((a, b) -> (a.getFirst() + a.getSecond().getFirst() + a.getSecond().getSecond())
+                .compareTo(b.getFirst() + b.getSecond().getFirst() + b.getSecond().getSecond()));
+
+        List<byte[]> classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            classes.add(generateClass("benchmark/generated/Generated" + i, methods, calls, fields, invokes, random));
+        }
+
+        return classes;
+    }
+
+    private static byte[] generateClass(String name, int methods, int calls, List<Pair<String, String>> fields,
+                                        List<Pair<String, Pair<String, String>>> invokes, Random random) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+
+        for (int i = 0; i < methods; i++) {
+            MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "method" + i, "(I)V", null, null);
+            method.visitCode();
+
+            // Loop, so classes have stack map frames
+            Label loop = new Label();
+            Label end = new Label();
+            method.visitLabel(loop);
+            method.visitVarInsn(Opcodes.ILOAD, 0);
+            method.visitJumpInsn(Opcodes.IFLE, end);
+
+            for (int j = 0; j < calls; j++) {
+                if (random.nextInt(3) == 0) {
+                    Pair<String, String> field = fields.get(random.nextInt(fields.size()));
+                    method.visitFieldInsn(Opcodes.GETSTATIC, field.getFirst(), field.getSecond(), "I");
+                    method.visitInsn(Opcodes.POP);
+                } else {
+                    Pair<String, Pair<String, String>> invoke = invokes.get(random.nextInt(invokes.size()));
+                    String descriptor = invoke.getSecond().getSecond();
+
+                    for (Type argument : Type.getArgumentTypes(descriptor)) {
+                        pushDefault(method, argument);
+                    }
+
+                    method.visitMethodInsn(Opcodes.INVOKESTATIC, invoke.getFirst(), invoke.getSecond().getFirst(),
+                            descriptor, false);
+                    pop(method, Type.getReturnType(descriptor));
+                }
+            }
+
+            method.visitIincInsn(0, -1);
+            method.visitJumpInsn(Opcodes.GOTO, loop);
+            method.visitLabel(end);
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void pushDefault(MethodVisitor method, Type type) {
+        switch (type.getSort()) {
+            case Type.LONG:
+                method.visitInsn(Opcodes.LCONST_0);
+                break;
+            case Type.FLOAT:
+                method.visitInsn(Opcodes.FCONST_0);
+                break;
+            case Type.DOUBLE:
+                method.visitInsn(Opcodes.DCONST_0);
+                break;
+            case Type.ARRAY:
+            case Type.OBJECT:
+                method.visitInsn(Opcodes.ACONST_NULL);
+                break;
+            default:
+                method.visitInsn(Opcodes.ICONST_0);
+        }
+    }
+
+    private static void pop(MethodVisitor method, Type type) {
+        if (type.getSize() == 2) {
+            method.visitInsn(Opcodes.POP2);
+        } else if (type.getSize() == 1) {
+            method.visitInsn(Opcodes.POP);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.vitusfox.creativereobfuscator.benchmark;
+
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of bundled mcp_mappings.tsrg: old regex parser against single-pass {@link net.vitusfox.creativereobfuscator.mapping.TsrgReader}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsrgParseBenchmark {
+
+    private String tsrg;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream is = TsrgParseBenchmark.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            if (is == null) {
+                throw new IllegalStateException("mcp_mappings.tsrg is not found");
+            }
+
+            tsrg = new String(Util.readFully(is), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Mapping regexParser() {
+        return LegacyTsrgParser.parse(tsrg, Mapping.REVERSED_CLASSES);
+    }
+
+    @Benchmark
+    public Mapping singlePassString() {
+        return new Mapping(tsrg, Mapping.REVERSED_CLASSES);
+    }
+
+    @Benchmark
+    public Mapping singlePassReader() throws IOException {
+        return new Mapping(new StringReader(tsrg), Mapping.REVERSED_CLASSES);
+    }
+}
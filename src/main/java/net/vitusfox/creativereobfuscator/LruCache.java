@@ -0,0 +1,98 @@
+package net.vitusfox.creativereobfuscator;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded cache evicting least recently used entries. Split into segments with own locks, so parallel threads do not
+ * wait for one lock. Every segment keeps its share of capacity, so eviction is approximately LRU. Null keys and values
+ * are not allowed. Thread-safe
+ */
+public class LruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final LinkedHashMap<K, V>[] segments;
+    private final int segmentCapacity;
+
+    /**
+     * @param capacity Maximum count of entries, at least one per segment is kept
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LruCache(int capacity) {
+        this.segmentCapacity = Math.max(capacity / SEGMENTS, 1);
+        this.segments = new LinkedHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new LinkedHashMap<>(16, 0.75F, true);
+        }
+    }
+
+    @Nullable
+    public V get(K key) {
+        LinkedHashMap<K, V> segment = segment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        LinkedHashMap<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+            evict(segment);
+        }
+    }
+
+    /**
+     * @return Value already cached, or null if given value was put
+     */
+    @Nullable
+    public V putIfAbsent(K key, V value) {
+        LinkedHashMap<K, V> segment = segment(key);
+        synchronized (segment) {
+            V current = segment.putIfAbsent(key, value);
+            evict(segment);
+            return current;
+        }
+    }
+
+    @Nullable
+    public V remove(K key) {
+        LinkedHashMap<K, V> segment = segment(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (LinkedHashMap<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (LinkedHashMap<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    private LinkedHashMap<K, V> segment(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /// Access order map, eldest entry is least recently used
+    private void evict(LinkedHashMap<K, V> segment) {
+        while (segment.size() > segmentCapacity) {
+            segment.remove(segment.keySet().iterator().next());
+        }
+    }
+}
@@ -30,6 +30,7 @@ public class Pair<F, S> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(first, second);
+        // Same value as Objects.hash(first, second), but without allocating varargs array on every call
+        return 31 * (31 + Objects.hashCode(first)) + Objects.hashCode(second);
     }
 }
@@ -3,6 +3,18 @@ package net.vitusfox.creativereobfuscator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class Util {
 
     public static <T> T nonNullOrDefault(@Nullable T nullable, @NotNull T defaultValue) {
@@ -12,4 +24,69 @@ public class Util {
             return nullable;
         }
     }
+
+    /**
+     * @return HashMap capacity which fits size entries without resize
+     */
+    public static int capacity(int size) {
+        return (int) (size / 0.75F) + 1;
+    }
+
+    /**
+     * Reads stream to the end. Stream is not closed
+     * @param stream Stream to read
+     * @return All remaining bytes of stream
+     */
+    public static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(stream.available(), 8192));
+        byte[] buffer = new byte[8192];
+
+        int read = stream.read(buffer);
+        while (read != -1) {
+            out.write(buffer, 0, read);
+            read = stream.read(buffer);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Replaces file atomically: content is written to temporary file next to target, which is then moved to target,
+     * so readers see old or new file, never incomplete one. Temporary file name is target name, random part and .tmp.
+     * Not Files.createTempFile, it creates file readable by owner only, so file has default permissions of new files
+     * @param target File to replace. Parent directory must exist
+     * @param content Writes content to channel of temporary file. Channel is closed after it
+     */
+    public static void writeAtomically(Path target, ChannelWriter content) throws IOException {
+        Path temp;
+        FileChannel channel;
+        while (true) {
+            temp = target.resolveSibling(target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // Taken by another writer, next name is tried
+            }
+        }
+
+        try {
+            try (FileChannel out = channel) {
+                content.write(out);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public interface ChannelWriter {
+
+        void write(FileChannel channel) throws IOException;
+    }
 }
@@ -0,0 +1,108 @@
+package net.vitusfox.creativereobfuscator.agent;
+
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+
+/**
+ * Class loader reobfuscating classes of its URLs (e.g. mod JARs) while loading them, without java agent.
+ * Classes are asked from parent first, as usual. Loader is parallel capable: classes are loaded under lock of their
+ * own name only, so many threads load different classes at the same time. Transformer may be shared by several loaders
+ */
+public class ReobfuscatingClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ReobfuscatingTransformer transformer;
+
+    /**
+     * @param urls JARs and directories with classes to reobfuscate
+     * @param parent Parent loader, e.g. loader of Minecraft classes. Nullable. If null, bootstrap loader is parent
+     * @param transformer Transformer with shared mapping
+     */
+    public ReobfuscatingClassLoader(URL[] urls, @Nullable ClassLoader parent, ReobfuscatingTransformer transformer) {
+        super(urls, parent);
+        this.transformer = transformer;
+    }
+
+    public ReobfuscatingTransformer getTransformer() {
+        return transformer;
+    }
+
+    /// Called by loadClass under getClassLoadingLock(name), which is lock of this name for parallel capable loader
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/') + ".class";
+        URL resource = findResource(path);
+        if (resource == null) {
+            throw new ClassNotFoundException(name);
+        }
+
+        byte[] bytecode;
+        try (InputStream is = resource.openStream()) {
+            bytecode = Util.readFully(is);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+
+        try {
+            byte[] reobfuscated = transformer.transform(this, bytecode);
+            if (reobfuscated != null) {
+                bytecode = reobfuscated;
+            }
+        } catch (RuntimeException e) {
+            // Class with old names would fail later with NoSuchMethodError far from the cause
+            throw new ClassNotFoundException("Could not reobfuscate class " + name, e);
+        }
+
+        definePackage(name);
+        return defineClass(name, bytecode, 0, bytecode.length, getCodeSource(resource, path));
+    }
+
+    @SuppressWarnings("deprecation") // getDefinedPackage is not in Java 8
+    private void definePackage(String className) {
+        int index = className.lastIndexOf('.');
+        if (index == -1) {
+            return;
+        }
+
+        String packageName = className.substring(0, index);
+        if (getPackage(packageName) == null) {
+            try {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } catch (IllegalArgumentException e) {
+                // Defined by another thread loading class of the same package
+            }
+        }
+    }
+
+    /// Code source is JAR or directory containing class, the same as URLClassLoader gives
+    @Nullable
+    private static CodeSource getCodeSource(URL resource, String path) {
+        String url = resource.toString();
+        if (!url.endsWith(path)) {
+            return null;
+        }
+
+        url = url.substring(0, url.length() - path.length());
+        if (url.startsWith("jar:") && url.endsWith("!/")) {
+            url = url.substring(4, url.length() - 2);
+        }
+
+        try {
+            return new CodeSource(URI.create(url).toURL(), (Certificate[]) null);
+        } catch (IllegalArgumentException | MalformedURLException e) {
+            return null;
+        }
+    }
+}
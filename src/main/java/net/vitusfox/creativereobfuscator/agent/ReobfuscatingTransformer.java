@@ -0,0 +1,175 @@
+package net.vitusfox.creativereobfuscator.agent;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassHierarchy;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassReobfuscator;
+import net.vitusfox.creativereobfuscator.reobfuscator.ConstantPoolScanner;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reobfuscates classes while they are loaded. One transformer is shared by all class loaders and loading threads:
+ * mapping and reobfuscator are shared, class hierarchy is kept per class loader, so unknown superclasses are read from
+ * the loader which loads the class. Hierarchies are kept in striped maps, so lookup locks only loaders of one stripe,
+ * and classes are transformed in parallel by threads loading them.
+ * Classes which reference no mapped class are skipped after constant pool check, see {@link ConstantPoolScanner}.
+ * Classes of transformer itself and of ASM are never transformed, as are classes loaded by the thread while it is
+ * transforming another class (e.g. by class loader reading superclass), so transformer does not call itself.
+ * Loaded class keeps its name, so mapping must not rename classes, like mapping of {@link Mapping#getReobfuscationMapping(String)}
+ */
+public class ReobfuscatingTransformer implements ClassFileTransformer {
+
+    /**
+     * Packages of classes which are never transformed: own classes and ASM (shaded or not), which transformer runs
+     */
+    public static final String[] EXCLUDED_PACKAGES = {"net/vitusfox/creativereobfuscator/", "org/objectweb/asm/"};
+
+    private static final int STRIPES = 16;
+
+    private final ClassReobfuscator reobfuscator;
+    // Weak keys, so hierarchy of discarded loader (e.g. of reloaded plugin) is dropped with it. Hierarchy refers
+    // to its loader weakly too. Stripe is chosen by identity hash of loader and guarded by itself, lookup is short
+    private final Map<ClassLoader, ClassHierarchy>[] hierarchies;
+    // Set while the thread transforms class, classes loaded meanwhile are not transformed
+    private final ThreadLocal<Boolean> transforming = new ThreadLocal<>();
+    private final LongAdder transformed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param mapping Mapping. Is shared, must not be changed, e.g. {@link Mapping#freeze()}
+     */
+    public ReobfuscatingTransformer(Mapping mapping) {
+        // Frames are kept, computing them would load classes from transformer
+        this(new ClassReobfuscator(mapping, ClassReobfuscator.STREAMING | ClassReobfuscator.PRESERVE_FRAMES));
+    }
+
+    /**
+     * @param reobfuscator Reobfuscator. Its own hierarchy is not used, hierarchy is created for every class loader
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ReobfuscatingTransformer(ClassReobfuscator reobfuscator) {
+        this.reobfuscator = reobfuscator;
+
+        hierarchies = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            hierarchies[i] = new WeakHashMap<>();
+        }
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        // Bootstrap classes are classes of JDK
+        if (loader == null || className == null || isExcluded(className)) {
+            return null;
+        }
+
+        try {
+            return transform(loader, classfileBuffer);
+        } catch (Throwable t) {
+            // Exception thrown by transformer is ignored by JVM without any message
+            failed.increment();
+            System.err.println("[CreativeReobfuscator] Could not reobfuscate class " + className + ": " + t);
+            return null;
+        }
+    }
+
+    private static boolean isExcluded(String className) {
+        for (String excluded : EXCLUDED_PACKAGES) {
+            if (className.startsWith(excluded)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param loader Class loader defining class. Classes not known to it are read from its resources
+     * @param bytecode Class to reobfuscate
+     * @return Reobfuscated class. Nullable. If null, class has nothing to reobfuscate, is loaded while this thread
+     * transforms another class, or should be used as is for other reason
+     */
+    @Nullable
+    public byte[] transform(ClassLoader loader, byte[] bytecode) {
+        if (transforming.get() != null) {
+            skipped.increment();
+            return null;
+        }
+
+        transforming.set(Boolean.TRUE);
+        try {
+            return transformClass(loader, bytecode);
+        } finally {
+            transforming.remove();
+        }
+    }
+
+    @Nullable
+    private byte[] transformClass(ClassLoader loader, byte[] bytecode) {
+        ClassReader reader = new ClassReader(bytecode);
+        String name = reader.getClassName();
+
+        // Classes of mapping are Minecraft classes, they are obfuscated already
+        if (reobfuscator.getMapping().getByName(name) != null || isExcluded(name)) {
+            skipped.increment();
+            return null;
+        }
+
+        ClassHierarchy hierarchy = getHierarchy(loader);
+        // Loaded class may differ from resource of loader (e.g. changed by other transformer) or have no resource at all
+        hierarchy.addClass(name, reader.getSuperName(), reader.getInterfaces(),
+                (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+
+        // Reobfuscator returns the same array for class referencing nothing mapped
+        byte[] reobfuscated = reobfuscator.reobfuscate(bytecode, hierarchy);
+        if (reobfuscated == bytecode) {
+            skipped.increment();
+            return null;
+        }
+
+        transformed.increment();
+        return reobfuscated;
+    }
+
+    private ClassHierarchy getHierarchy(ClassLoader loader) {
+        int hash = System.identityHashCode(loader);
+        Map<ClassLoader, ClassHierarchy> stripe = hierarchies[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            return stripe.computeIfAbsent(loader, key -> new ClassHierarchy(reobfuscator.getMapping(), null, key));
+        }
+    }
+
+    public ClassReobfuscator getReobfuscator() {
+        return reobfuscator;
+    }
+
+    /**
+     * @return Count of reobfuscated classes
+     */
+    public long getTransformed() {
+        return transformed.sum();
+    }
+
+    /**
+     * @return Count of classes left as is, because they reference no mapped class
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return Count of classes which could not be reobfuscated and were loaded as is
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+}
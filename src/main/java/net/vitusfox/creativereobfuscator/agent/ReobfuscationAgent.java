@@ -0,0 +1,52 @@
+package net.vitusfox.creativereobfuscator.agent;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.mapping.LoadState;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent reobfuscating classes while they are loaded:
+ * {@code java -javaagent:creative-reobfuscator.jar[=mapping.tsrg] ...}.
+ * Argument is mapping file of {@link Mapping#getReobfuscationMapping(String)}, without it prebuilt mapping is used.
+ * Mapping is loaded once before main and shared by all class loaders
+ */
+public final class ReobfuscationAgent {
+
+    private static volatile ReobfuscatingTransformer transformer;
+
+    private ReobfuscationAgent() {
+    }
+
+    public static void premain(@Nullable String args, Instrumentation instrumentation) throws IOException {
+        install(args, instrumentation);
+    }
+
+    /**
+     * Agent attached to running JVM. Only classes loaded after attach are reobfuscated
+     */
+    public static void agentmain(@Nullable String args, Instrumentation instrumentation) throws IOException {
+        install(args, instrumentation);
+    }
+
+    /**
+     * @return Installed transformer. Nullable. If null, agent is not installed
+     */
+    @Nullable
+    public static ReobfuscatingTransformer getTransformer() {
+        return transformer;
+    }
+
+    private static synchronized void install(@Nullable String args, Instrumentation instrumentation) throws IOException {
+        if (transformer != null) {
+            return;
+        }
+
+        Pair<LoadState, Mapping> pair = Mapping.getReobfuscationMapping(args == null || args.isEmpty() ? null : args);
+        transformer = new ReobfuscatingTransformer(pair.getSecond().freeze());
+        instrumentation.addTransformer(transformer);
+    }
+}
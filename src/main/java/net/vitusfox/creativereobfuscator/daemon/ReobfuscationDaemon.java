@@ -0,0 +1,530 @@
+package net.vitusfox.creativereobfuscator.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.LoadState;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassReobfuscator;
+import net.vitusfox.creativereobfuscator.reobfuscator.JarReobfuscationReport;
+import net.vitusfox.creativereobfuscator.reobfuscator.ReobfuscationCache;
+import net.vitusfox.creativereobfuscator.service.ReobfuscationService;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local HTTP daemon for build tools, so mapping is loaded and JIT-compiled once instead of once per build:
+ * {@code java -cp creative-reobfuscator.jar:asm.jar:... net.vitusfox.creativereobfuscator.daemon.ReobfuscationDaemon}.
+ * Listens on loopback only. Requests are handled concurrently on virtual threads (Java 21+) or on cached thread pool,
+ * classes are reobfuscated by {@link ReobfuscationService}. Every request must carry {@code Authorization: Bearer <token>}
+ * and Host of loopback address (against DNS rebinding from browser), request bodies are limited in size.
+ * Endpoints, {@code mapping} query parameter selects mapping:
+ * <ul>
+ *     <li>{@code POST /class} - body is class, response is reobfuscated class</li>
+ *     <li>{@code POST /jar} - body is JAR, response is reobfuscated JAR. Response starts after the whole JAR is
+ *     reobfuscated, entries are sorted by output name, so no entry can be written before all are known</li>
+ *     <li>{@code GET /status} - loaded mappings and load of service</li>
+ * </ul>
+ */
+public class ReobfuscationDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 25595;
+    public static final int DEFAULT_WARMUP_ITERATIONS = 200;
+    public static final long DEFAULT_MAX_BODY_SIZE = 256L << 20; // 256 MB
+
+    private static final String CLASS_TYPE = "application/java-vm";
+    private static final String JAR_TYPE = "application/java-archive";
+    // References of warm-up class, enough to compile lookups and writer
+    private static final int WARMUP_REFERENCES = 256;
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+    private static final String BEARER = "Bearer ";
+    private static final Set<String> LOOPBACK_HOSTS = new HashSet<>(Arrays.asList("127.0.0.1", "localhost", "[::1]"));
+    private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList("port", "mapping", "flags", "parallelism",
+            "max-requests", "max-jar-size", "cache", "warmup", "token", "max-body"));
+
+    private final ReobfuscationService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] token;
+    private final long maxBodySize;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates daemon with random token, see {@link #getToken()}, and default body limit
+     * @param service Service reobfuscating classes. Is not closed by daemon
+     * @param port Port on loopback address. If 0, any free port is used, see {@link #getPort()}
+     */
+    public ReobfuscationDaemon(ReobfuscationService service, int port) throws IOException {
+        this(service, port, generateToken(), DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param service Service reobfuscating classes. Is not closed by daemon
+     * @param port Port on loopback address. If 0, any free port is used, see {@link #getPort()}
+     * @param token Shared secret, clients send it as {@code Authorization: Bearer <token>}
+     * @param maxBodySize Maximum size of request body in bytes, larger requests get status 413
+     */
+    public ReobfuscationDaemon(ReobfuscationService service, int port, String token, long maxBodySize) throws IOException {
+        if (token.isEmpty()) {
+            throw new IllegalStateException("Token is empty");
+        }
+
+        this.service = service;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.maxBodySize = maxBodySize;
+        this.executor = createExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.createContext("/class", exchange -> handle(exchange, this::reobfuscateClass));
+        server.createContext("/jar", exchange -> handle(exchange, this::reobfuscateJar));
+        server.createContext("/status", exchange -> handle(exchange, this::status));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ReobfuscationService getService() {
+        return service;
+    }
+
+    public String getToken() {
+        return new String(token, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reobfuscates generated class referencing members of mapping, so JIT compiles reobfuscation before first build
+     * @param iterations Reobfuscations of class for every mapping
+     */
+    public void warmUp(int iterations) throws InterruptedException, ExecutionException {
+        for (String name : service.getMappings()) {
+            ClassReobfuscator reobfuscator = service.getReobfuscator(name);
+            List<byte[]> classes = Collections.nCopies(iterations, createWarmUpClass(reobfuscator.getMapping()));
+            service.submitClasses(name, classes).get();
+        }
+    }
+
+    /**
+     * Stops listening, active exchanges are given a second to finish
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void reobfuscateClass(HttpExchange exchange, String mapping) throws Exception {
+        byte[] bytecode = Util.readFully(getRequestBody(exchange));
+        byte[] reobfuscated = await(service.submitClasses(mapping, Collections.singletonList(bytecode))).get(0);
+
+        exchange.getResponseHeaders().set("Content-Type", CLASS_TYPE);
+        exchange.sendResponseHeaders(200, reobfuscated.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(reobfuscated);
+        }
+    }
+
+    private void reobfuscateJar(HttpExchange exchange, String mapping) throws Exception {
+        exchange.getResponseHeaders().set("Content-Type", JAR_TYPE);
+        // Request body is read and response is written by thread of request. Headers are sent with first entry,
+        // which is written after all entries are reobfuscated, so failed JAR still gets status
+        ResponseStream response = new ResponseStream(exchange);
+        JarReobfuscationReport report = await(service.submitJar(mapping, getRequestBody(exchange), response));
+
+        response.close();
+        log("Reobfuscated JAR: " + report);
+    }
+
+    private void status(HttpExchange exchange, String mapping) throws IOException {
+        String status = "mappings: " + String.join(", ", service.getMappings()) + '\n'
+                + "active requests: " + service.getActiveRequests() + '\n'
+                + "queued classes: " + service.getQueuedClasses() + '\n'
+                + "handled requests: " + handled.sum() + '\n'
+                + "failed requests: " + failed.sum() + '\n';
+
+        sendText(exchange, 200, status);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                sendText(exchange, 403, "Host is not loopback address\n");
+                return;
+            }
+
+            if (!isAuthorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendText(exchange, 401, "Missing or wrong token\n");
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            boolean status = exchange.getHttpContext().getPath().equals("/status");
+            if (!method.equals(status ? "GET" : "POST")) {
+                sendText(exchange, 405, "Method " + method + " is not allowed\n");
+                return;
+            }
+
+            String mapping = getMapping(exchange);
+            if (service.getReobfuscator(mapping) == null) {
+                sendText(exchange, 404, "Unknown mapping " + mapping + '\n');
+                return;
+            }
+
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (length != null && Long.parseLong(length.trim()) > maxBodySize) {
+                sendText(exchange, 413, "Request body is larger than " + maxBodySize + " bytes\n");
+                return;
+            }
+
+            handler.handle(exchange, mapping);
+            handled.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log("Could not handle " + exchange.getRequestURI() + ": " + e);
+
+            // After headers status can not be changed. Exchange is not closed, so server drops connection without
+            // last chunk and client sees truncated response
+            if (exchange.getResponseCode() != -1) {
+                throw e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+
+            sendText(exchange, e instanceof BodyTooLargeException ? 413 : 500, String.valueOf(e.getMessage()) + '\n');
+        }
+
+        exchange.close();
+    }
+
+    /// Body limited to maxBodySize, also when Content-Length is missing (chunked request) or wrong
+    private InputStream getRequestBody(HttpExchange exchange) {
+        return new LimitedInputStream(exchange.getRequestBody(), maxBodySize);
+    }
+
+    /// Port is not checked, daemon may be reached through forwarded port
+    private static boolean isLoopbackHost(@Nullable String host) {
+        if (host == null) {
+            return false;
+        }
+
+        int portStart = host.lastIndexOf(':');
+        if (portStart > host.lastIndexOf(']')) {
+            host = host.substring(0, portStart);
+        }
+
+        return LOOPBACK_HOSTS.contains(host.toLowerCase(Locale.ROOT));
+    }
+
+    /// Compared in constant time, so token can not be guessed by response time
+    private boolean isAuthorized(@Nullable String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+
+        byte[] given = authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(token, given);
+    }
+
+    /// 128 random bits as hex
+    private static String generateToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder token = new StringBuilder(32);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return token.toString();
+    }
+
+    /// Waits for request. Interrupted exchange (e.g. daemon is stopped) cancels request
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static String getMapping(HttpExchange exchange) throws UnsupportedEncodingException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("mapping=")) {
+                    return URLDecoder.decode(parameter.substring("mapping=".length()), "UTF-8");
+                }
+            }
+        }
+
+        return ReobfuscationService.DEFAULT_MAPPING;
+    }
+
+    private static void sendText(HttpExchange exchange, int code, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /// Class with LDC of handles of mapped fields and methods and types of mapped classes, no code is ever run
+    private static byte[] createWarmUpClass(Mapping mapping) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "net/vitusfox/creativereobfuscator/daemon/WarmUp",
+                null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "warmUp", "()V", null, null);
+        method.visitCode();
+
+        int references = 0;
+        for (Map.Entry<String, ClassMapping> entry : mapping.getClasses().entrySet()) {
+            if (references >= WARMUP_REFERENCES) {
+                break;
+            }
+
+            String owner = entry.getKey();
+            ldc(method, Type.getObjectType(owner));
+            for (String field : entry.getValue().getFields().keySet()) {
+                ldc(method, new Handle(Opcodes.H_GETFIELD, owner, field, "Ljava/lang/Object;", false));
+                break;
+            }
+
+            for (Pair<String, String> methodKey : entry.getValue().getMethods().keySet()) {
+                ldc(method, new Handle(Opcodes.H_INVOKEVIRTUAL, owner, methodKey.getFirst(), methodKey.getSecond(), false));
+                break;
+            }
+
+            references++;
+        }
+
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        writer.visitEnd();
+
+        return writer.toByteArray();
+    }
+
+    private static void ldc(MethodVisitor method, Object constant) {
+        method.visitLdcInsn(constant);
+        method.visitInsn(Opcodes.POP);
+    }
+
+    /// Virtual thread per request on Java 21+, cached pool of daemon threads on older Java (built for Java 8)
+    static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "reobfuscation-daemon-" + THREAD_IDS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println("[CreativeReobfuscator] " + message);
+    }
+
+    /**
+     * Starts daemon
+     * @param args Options: --port (default {@value #DEFAULT_PORT}), --mapping (mapping file of
+     *             {@link Mapping#getReobfuscationMapping(String)}), --flags (reobfuscator flags), --parallelism,
+     *             --max-requests, --max-jar-size (maximum uncompressed JAR in bytes), --cache (cache directory), --warmup (iterations, 0 turns warm-up off), --token
+     *             (shared secret, random and printed if not given), --max-body (maximum request body in bytes)
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        int port = Integer.parseInt(options.getOrDefault("port", String.valueOf(DEFAULT_PORT)));
+        String mappingFile = options.get("mapping");
+        String cacheDirectory = options.get("cache");
+        int warmUpIterations = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(DEFAULT_WARMUP_ITERATIONS)));
+        String token = options.get("token");
+        long maxBodySize = Long.parseLong(options.getOrDefault("max-body", String.valueOf(DEFAULT_MAX_BODY_SIZE)));
+
+        long start = System.nanoTime();
+        Pair<LoadState, Mapping> pair = Mapping.getReobfuscationMapping(mappingFile);
+        log(String.format("Mapping %s in %.1f ms", pair.getFirst().name(), (System.nanoTime() - start) / 1_000_000D));
+
+        ExecutorService serviceExecutor = createExecutor();
+        ReobfuscationService service = ReobfuscationService.builder()
+                .flags(Integer.parseInt(options.getOrDefault("flags", "0")))
+                .mapping(ReobfuscationService.DEFAULT_MAPPING, pair.getSecond())
+                .executor(serviceExecutor)
+                .parallelism(Integer.parseInt(options.getOrDefault("parallelism",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))))
+                .maxRequests(Integer.parseInt(options.getOrDefault("max-requests",
+                        String.valueOf(ReobfuscationService.DEFAULT_MAX_REQUESTS))))
+                .maxJarSize(Long.parseLong(options.getOrDefault("max-jar-size",
+                        String.valueOf(ReobfuscationService.DEFAULT_MAX_JAR_SIZE))))
+                .cache(cacheDirectory == null ? null : new ReobfuscationCache(new File(cacheDirectory)))
+                .build();
+
+        ReobfuscationDaemon daemon = new ReobfuscationDaemon(service, port, token == null ? generateToken() : token,
+                maxBodySize);
+        if (warmUpIterations > 0) {
+            start = System.nanoTime();
+            daemon.warmUp(warmUpIterations);
+            log(String.format("Warmed up in %.1f ms", (System.nanoTime() - start) / 1_000_000D));
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            daemon.close();
+            service.close();
+            serviceExecutor.shutdown();
+        }, "reobfuscation-daemon-shutdown"));
+
+        daemon.start();
+        log("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ':' + daemon.getPort());
+        if (token == null) {
+            // Given token is not printed, so it does not get into build logs
+            log("Token: " + daemon.getToken());
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !OPTIONS.contains(args[i].substring(2)) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option " + args[i] + ". Usage: "
+                        + "ReobfuscationDaemon [--port <port>] [--mapping <file>] [--flags <flags>] "
+                        + "[--parallelism <threads>] [--max-requests <count>] [--max-jar-size <bytes>] [--cache <directory>] "
+                        + "[--warmup <iterations>] [--token <token>] [--max-body <bytes>]");
+            }
+
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return options;
+    }
+
+    private interface Handler {
+
+        void handle(HttpExchange exchange, String mapping) throws Exception;
+    }
+
+    private static class BodyTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private BodyTooLargeException(long limit) {
+            super("Request body is larger than " + limit + " bytes");
+        }
+    }
+
+    /// Fails when more than limit bytes are read
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws BodyTooLargeException {
+            count += bytes;
+            if (count > limit) {
+                throw new BodyTooLargeException(limit);
+            }
+        }
+    }
+
+    /// Response body with chunked encoding, headers are sent on first write, so failure before output gets error status
+    private static class ResponseStream extends OutputStream {
+
+        private final HttpExchange exchange;
+        @Nullable
+        private OutputStream body;
+
+        private ResponseStream(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getBody().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            getBody().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            getBody().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            getBody().close();
+        }
+
+        private OutputStream getBody() throws IOException {
+            if (body == null) {
+                exchange.sendResponseHeaders(200, 0);
+                body = new BufferedOutputStream(exchange.getResponseBody());
+            }
+
+            return body;
+        }
+    }
+}
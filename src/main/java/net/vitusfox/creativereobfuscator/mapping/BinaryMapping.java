@@ -0,0 +1,272 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of {@link Mapping}. Used as a cache next to the saved TSRG file, so loading does not parse text.
+ * <p>
+ * Layout (big-endian, all counts and indexes are unsigned varints):
+ * <pre>
+ * int magic, int version, long source hash, int mapping flags
+ * string table: count, then (byte length, UTF-8 bytes) for every string
+ * class count, then for every class:
+ *     obfuscated index, deobfuscated index,
+ *     field count, (key index, value index) for every field,
+ *     method count, (name index, signature index, value index) for every method
+ * </pre>
+ * Every name and signature is stored once in string table, so all loaded class mappings share the same String instances.
+ * Counts are stored before entries, so lookup tables are created with their final size and never rehashed
+ */
+public class BinaryMapping {
+
+    public static final int MAGIC = 0x4352424D; // CRBM
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".bin";
+
+    /**
+     * @param tsrgFile Saved TSRG mapping
+     * @return Binary cache file for this TSRG file
+     */
+    public static File getCacheFile(File tsrgFile) {
+        return new File(tsrgFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Hash of source mappings file. Stored in binary cache and checked on load, so edited TSRG file is not shadowed
+     * by old cache
+     */
+    public static long hash(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+
+            return (size << 32) ^ crc.getValue();
+        }
+    }
+
+    /**
+     * Loads mapping from binary cache through memory-mapped file
+     * @param file Binary cache file
+     * @param expectedHash Hash of source mappings, see {@link #hash(File)}
+     * @return Frozen mapping. Nullable. If null, cache not exists, outdated or corrupted
+     */
+    @Nullable
+    public static Mapping read(File file, long expectedHash) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            Long hash = readHeader(buffer);
+            if (hash == null || hash != expectedHash) {
+                return null;
+            }
+
+            return readBody(buffer);
+        } catch (RuntimeException e) {
+            // Truncated or broken cache (e.g. BufferUnderflowException, broken index or count), will be rewritten
+            return null;
+        }
+    }
+
+    /**
+     * Loads mapping from binary form without checking hash of source mappings
+     * @param buffer Buffer positioned at the start of binary mapping
+     * @return Frozen mapping
+     */
+    public static Mapping read(ByteBuffer buffer) {
+        if (readHeader(buffer) == null) {
+            throw new IllegalStateException("Not a binary mapping or unsupported version");
+        }
+
+        return readBody(buffer);
+    }
+
+    @Nullable
+    private static Long readHeader(ByteBuffer buffer) {
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+
+        return buffer.getLong();
+    }
+
+    /// Entries are read right into arrays of frozen member tables, without HashMaps
+    private static Mapping readBody(ByteBuffer buffer) {
+        int flags = buffer.getInt();
+
+        String[] strings = new String[readCount(buffer)];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readCount(buffer);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int classCount = readCount(buffer);
+        List<ClassMapping> classes = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            String obfuscatedClass = strings[readVarInt(buffer)];
+            String deobfuscatedClass = strings[readVarInt(buffer)];
+
+            int fieldCount = readCount(buffer);
+            String[] fieldNames = new String[fieldCount];
+            String[] fieldValues = new String[fieldCount];
+            for (int j = 0; j < fieldCount; j++) {
+                fieldNames[j] = strings[readVarInt(buffer)];
+                fieldValues[j] = strings[readVarInt(buffer)];
+            }
+
+            int methodCount = readCount(buffer);
+            String[] methodNames = new String[methodCount];
+            String[] signatures = new String[methodCount];
+            String[] methodValues = new String[methodCount];
+            for (int j = 0; j < methodCount; j++) {
+                methodNames[j] = strings[readVarInt(buffer)];
+                signatures[j] = strings[readVarInt(buffer)];
+                methodValues[j] = strings[readVarInt(buffer)];
+            }
+
+            classes.add(ClassMapping.of(MemberTable.of(fieldNames, null, fieldValues),
+                    MemberTable.of(methodNames, signatures, methodValues), obfuscatedClass, deobfuscatedClass));
+        }
+
+        return Mapping.ofFrozen(flags, classes);
+    }
+
+    /**
+     * Writes mapping in binary form
+     * @param mapping Mapping to write
+     * @param sourceHash Hash of source mappings, see {@link #hash(File)}
+     * @param file Output file. Will be replaced atomically, readers see old or new file, never incomplete one
+     */
+    public static void write(Mapping mapping, long sourceHash, File file) throws IOException {
+        // Members of frozen classes are copied by getFields and getMethods, so they are taken once
+        List<ClassMapping> classes = new ArrayList<>(mapping.getClasses().values());
+        List<HashMap<String, String>> fields = new ArrayList<>(classes.size());
+        List<HashMap<Pair<String, String>, String>> methods = new ArrayList<>(classes.size());
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        for (ClassMapping classMapping : classes) {
+            index(strings, classMapping.getObfuscatedClass());
+            index(strings, classMapping.getDeobfuscatedClass());
+
+            fields.add(classMapping.getFields());
+            for (Map.Entry<String, String> field : fields.get(fields.size() - 1).entrySet()) {
+                index(strings, field.getKey());
+                index(strings, field.getValue());
+            }
+
+            methods.add(classMapping.getMethods());
+            for (Map.Entry<Pair<String, String>, String> method : methods.get(methods.size() - 1).entrySet()) {
+                index(strings, method.getKey().getFirst());
+                index(strings, method.getKey().getSecond());
+                index(strings, method.getValue());
+            }
+        }
+
+        Util.writeAtomically(file.toPath().toAbsolutePath(), channel -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                write(mapping.getFlags(), sourceHash, classes, fields, methods, strings, out);
+            }
+        });
+    }
+
+    private static void write(int flags, long sourceHash, List<ClassMapping> classes, List<HashMap<String, String>> fields,
+                              List<HashMap<Pair<String, String>, String>> methods, LinkedHashMap<String, Integer> strings,
+                              DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceHash);
+        out.writeInt(flags);
+
+        writeVarInt(out, strings.size());
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarInt(out, classes.size());
+        for (int i = 0; i < classes.size(); i++) {
+            ClassMapping classMapping = classes.get(i);
+            writeVarInt(out, strings.get(classMapping.getObfuscatedClass()));
+            writeVarInt(out, strings.get(classMapping.getDeobfuscatedClass()));
+
+            writeVarInt(out, fields.get(i).size());
+            for (Map.Entry<String, String> field : fields.get(i).entrySet()) {
+                writeVarInt(out, strings.get(field.getKey()));
+                writeVarInt(out, strings.get(field.getValue()));
+            }
+
+            writeVarInt(out, methods.get(i).size());
+            for (Map.Entry<Pair<String, String>, String> method : methods.get(i).entrySet()) {
+                writeVarInt(out, strings.get(method.getKey().getFirst()));
+                writeVarInt(out, strings.get(method.getKey().getSecond()));
+                writeVarInt(out, strings.get(method.getValue()));
+            }
+        }
+    }
+
+    private static void index(LinkedHashMap<String, Integer> strings, String s) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, strings.size());
+        }
+    }
+
+    /// Count of following entries, each takes at least one byte, so broken count fails before huge allocation
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        return count;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+
+        byte b = buffer.get();
+        while ((b & 0x80) != 0) {
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            b = buffer.get();
+        }
+
+        return value | (b << shift);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+}
@@ -1,15 +1,19 @@
 package net.vitusfox.creativereobfuscator.mapping;
 
 import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ClassMapping {
 
+    /**
+     * @deprecated Not used anymore, signatures are parsed by {@link DescriptorTranslator}
+     */
+    @Deprecated
     public static final Pattern SIGNATURE_CLASS_PATTERN = Pattern.compile("(?<=L)[^;]+(?=;)");
 
     /**
@@ -24,10 +28,22 @@ public class ClassMapping {
         return new Builder(0, obfuscatedClass, deobfuscatedClass);
     }
 
+    /// Creates frozen mapping from ready tables. Tables are not copied
+    static ClassMapping of(MemberTable fieldTable, MemberTable methodTable, String obfuscatedClass, String deobfuscatedClass) {
+        return new ClassMapping(fieldTable, methodTable, obfuscatedClass, deobfuscatedClass);
+    }
+
+    // Null if frozen, then fieldTable and methodTable hold all members
+    @Nullable
     private final HashMap<String, String> fields;
+    @Nullable
     private final HashMap<Pair<String, String>, String> methods;
     private final String obfuscatedClass;
     private final String deobfuscatedClass;
+    @Nullable
+    private final MemberTable fieldTable;
+    // Built on first method lookup. Many intermediate class mappings of merging are never looked up
+    private volatile MemberTable methodTable;
 
     private ClassMapping(HashMap<String, String> fieldMappings, HashMap<Pair<String, String>, String> methodMappings,
                          String obfuscatedClass, String deobfuscatedClass) {
@@ -35,10 +51,20 @@ public class ClassMapping {
         this.methods = methodMappings;
         this.obfuscatedClass = obfuscatedClass;
         this.deobfuscatedClass = deobfuscatedClass;
+        this.fieldTable = null;
+    }
+
+    private ClassMapping(MemberTable fieldTable, MemberTable methodTable, String obfuscatedClass, String deobfuscatedClass) {
+        this.fields = null;
+        this.methods = null;
+        this.obfuscatedClass = obfuscatedClass;
+        this.deobfuscatedClass = deobfuscatedClass;
+        this.fieldTable = fieldTable;
+        this.methodTable = methodTable;
     }
 
     public ClassMapping withNewCreditnails(String obfuscatedClass, String deobfuscatedClass) {
-        return new ClassMapping(new HashMap<>(fields), new HashMap<>(methods), obfuscatedClass, deobfuscatedClass);
+        return new ClassMapping(new HashMap<>(getFields()), new HashMap<>(getMethods()), obfuscatedClass, deobfuscatedClass);
     }
 
     public ClassMapping withNewMappings(HashMap<String, String> fields, HashMap<Pair<String, String>, String> methods) {
@@ -52,7 +78,7 @@ public class ClassMapping {
      */
     @Nullable
     public String getFieldByName(String obfuscated) {
-        return fields.get(obfuscated);
+        return fieldTable == null ? fields.get(obfuscated) : fieldTable.get(obfuscated);
     }
 
     /**
@@ -63,15 +89,64 @@ public class ClassMapping {
      */
     @Nullable
     public String getMethodByName(String obfuscated, String signature) {
-        return methods.get(new Pair<>(obfuscated, signature));
+        return getMethodTable().get(obfuscated, signature);
+    }
+
+    private MemberTable getMethodTable() {
+        MemberTable table = methodTable;
+        if (table == null) {
+            table = MemberTable.ofMethods(methods, null);
+            methodTable = table;
+        }
+
+        return table;
     }
 
+    /**
+     * @return Methods, (obfuscated name, signature) -> deobfuscated name. Must not be changed, lookup table of
+     * {@link #getMethodByName(String, String)} is built from it once. For frozen mapping it is a new copy on every call
+     */
     public HashMap<Pair<String, String>, String> getMethods() {
-        return methods;
+        return methods == null ? methodTable.toMethodMap() : methods;
     }
 
+    /**
+     * @return Fields, obfuscated name -> deobfuscated name. For frozen mapping it is a new copy on every call
+     */
     public HashMap<String, String> getFields() {
-        return fields;
+        return fields == null ? fieldTable.toFieldMap() : fields;
+    }
+
+    /**
+     * @return true, if members are stored in compact tables, see {@link Mapping#freeze()}
+     */
+    public boolean isFrozen() {
+        return fieldTable != null;
+    }
+
+    /**
+     * Creates immutable copy with members stored in flat tables instead of HashMaps
+     * @param pool Strings pool shared by all classes of mapping. Nullable
+     */
+    ClassMapping freeze(@Nullable Map<String, String> pool) {
+        if (isFrozen() && pool == null) {
+            return this;
+        }
+
+        return new ClassMapping(MemberTable.ofFields(getFields(), pool), MemberTable.ofMethods(getMethods(), pool),
+                MemberTable.intern(pool, obfuscatedClass), MemberTable.intern(pool, deobfuscatedClass));
+    }
+
+    /**
+     * Creates mapping of the opposite direction: result member names -> original names. Used by {@link Mapping#inverse()}.
+     * Member tables are not copied, inverse tables share names of this mapping and only add their own index. If
+     * several members have the same result name, the first one of table is kept
+     * @param translator Translator of original mapping, method descriptors are translated to result class names
+     */
+    ClassMapping inverse(String obfuscatedClass, String deobfuscatedClass, DescriptorTranslator translator) {
+        MemberTable fields = fieldTable == null ? MemberTable.ofFields(this.fields, null) : fieldTable;
+        return new ClassMapping(fields.inverse(translator), getMethodTable().inverse(translator), obfuscatedClass,
+                deobfuscatedClass);
     }
 
     /**
@@ -91,33 +166,40 @@ public class ClassMapping {
     }
 
     public ClassMapping copy() {
-        return new ClassMapping(new HashMap<>(fields), new HashMap<>(methods), obfuscatedClass, deobfuscatedClass);
+        return new ClassMapping(new HashMap<>(getFields()), new HashMap<>(getMethods()), obfuscatedClass, deobfuscatedClass);
     }
 
+    /**
+     * @param dict Obfuscated class -> deobfuscated class
+     */
     public ClassMapping deobfuscateMethodsSignature(HashMap<String, String> dict) {
-        ClassMapping deobfuscated = copy();
-        deobfuscated.methods.clear();
-
-        for (Map.Entry<Pair<String, String>, String> entry : methods.entrySet()) {
-            // Don't touch names!
-            String signature = entry.getKey().getSecond();
-            String out = signature;
+        return deobfuscateMethodsSignature(new DescriptorTranslator(dict::get, 0));
+    }
 
-            Matcher matcher = SIGNATURE_CLASS_PATTERN.matcher(signature);
-            while (matcher.find()) {
-                String obfuscatedClass = matcher.group();
-                String deobfuscatedClass = dict.get(obfuscatedClass);
+    /**
+     * Renames classes in method signatures, names are not changed. Malformed signature is kept as is
+     * @param translator Translator of signatures. May be shared by all classes of mapping, so repeated signatures
+     *                   are translated once
+     */
+    public ClassMapping deobfuscateMethodsSignature(DescriptorTranslator translator) {
+        HashMap<Pair<String, String>, String> currentMethods = getMethods();
+        HashMap<Pair<String, String>, String> deobfuscatedMethods = new HashMap<>(Util.capacity(currentMethods.size()));
 
-                if (deobfuscatedClass != null) {
-                    out = out.replace("L" + obfuscatedClass + ";", "L" + deobfuscatedClass + ";");
-                }
+        for (Map.Entry<Pair<String, String>, String> entry : currentMethods.entrySet()) {
+            String signature = entry.getKey().getSecond();
+            String deobfuscated;
+            try {
+                deobfuscated = translator.translate(signature);
+            } catch (IllegalStateException e) {
+                deobfuscated = signature; // One broken line of mapping file should not fail whole mapping
             }
 
-            // Putting it to copy
-            deobfuscated.methods.put(new Pair<>(entry.getKey().getFirst(), out), entry.getValue());
+            // Translator returns the same instance for unchanged signature, then key is reused
+            deobfuscatedMethods.put(deobfuscated == signature ? entry.getKey()
+                    : new Pair<>(entry.getKey().getFirst(), deobfuscated), entry.getValue());
         }
 
-        return deobfuscated;
+        return new ClassMapping(new HashMap<>(getFields()), deobfuscatedMethods, obfuscatedClass, deobfuscatedClass);
     }
 
     public static class Builder {
@@ -0,0 +1,244 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.LruCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * Renames classes in field and method descriptors and in generic signatures (class, method and field signatures).
+ * Strings are parsed by hand-written scanner by grammar of JVMS 4.3 and 4.7.9.1, without regular expressions.
+ * The same few thousand descriptors repeat in every class, so results are kept in bounded LRU cache. Thread-safe
+ */
+public class DescriptorTranslator {
+
+    public static final int DEFAULT_CACHE_SIZE = 8192;
+
+    private final Function<String, String> classNames;
+    // Segmented, so parallel reobfuscation does not wait for one lock
+    @Nullable
+    private final LruCache<String, String> cache;
+
+    /**
+     * @param classNames Internal class name -> new internal name. Returns null, if class is not renamed
+     * @param cacheSize Maximum count of cached translations. If 0, nothing is cached
+     */
+    public DescriptorTranslator(Function<String, String> classNames, int cacheSize) {
+        this.classNames = classNames;
+
+        this.cache = cacheSize > 0 ? new LruCache<>(cacheSize) : null;
+    }
+
+    /**
+     * Translator renaming classes by mapping, e.g. deobfuscated -> obfuscated
+     */
+    public DescriptorTranslator(Mapping mapping) {
+        this(name -> {
+            ClassMapping classMapping = mapping.getByName(name);
+            return classMapping == null ? null : classMapping.getObfuscatedClass();
+        }, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param internalName Internal class name
+     * @return New internal name, or the same name if class is not renamed
+     */
+    public String translateClass(String internalName) {
+        String renamed = classNames.apply(internalName);
+        return renamed == null ? internalName : renamed;
+    }
+
+    /**
+     * Translates field descriptor, method descriptor or any generic signature
+     * @param descriptor Descriptor or signature. Nullable
+     * @return Translated descriptor. The same instance, if nothing is renamed. Null, if descriptor is null
+     * @throws IllegalStateException If descriptor is malformed
+     */
+    public String translate(@Nullable String descriptor) {
+        // No class can be referenced without L, e.g. (IZ)V or TT;
+        if (descriptor == null || descriptor.indexOf('L') == -1) {
+            return descriptor;
+        }
+
+        if (cache == null) {
+            return scan(descriptor);
+        }
+
+        String translated = cache.get(descriptor);
+        if (translated == null) {
+            translated = scan(descriptor);
+            cache.put(descriptor, translated);
+        }
+
+        return translated;
+    }
+
+    /**
+     * Translates operand of NEW, ANEWARRAY, CHECKCAST or INSTANCEOF: internal name or array descriptor
+     */
+    public String translateType(String type) {
+        return type.charAt(0) == '[' ? translate(type) : translateClass(type);
+    }
+
+    private String scan(String descriptor) {
+        Scanner scanner = new Scanner(descriptor);
+        scanner.signature();
+
+        String translated = scanner.out.toString();
+        return translated.equals(descriptor) ? descriptor : translated;
+    }
+
+    private class Scanner {
+
+        private final String in;
+        private final StringBuilder out;
+        private int pos;
+
+        private Scanner(String in) {
+            this.in = in;
+            this.out = new StringBuilder(in.length() + 16);
+        }
+
+        /// [TypeParameters] (either method part or sequence of types), covers descriptors and all kinds of signatures
+        private void signature() {
+            if (peek() == '<') {
+                typeParameters();
+            }
+
+            if (pos < in.length() && peek() == '(') {
+                copy(); // (
+                while (peek() != ')') {
+                    type();
+                }
+
+                copy(); // )
+                type(); // Return type
+
+                while (pos < in.length() && peek() == '^') {
+                    copy();
+                    type();
+                }
+            } else {
+                while (pos < in.length()) {
+                    type();
+                }
+            }
+        }
+
+        private void typeParameters() {
+            copy(); // <
+            while (peek() != '>') {
+                // Identifier
+                while (peek() != ':') {
+                    copy();
+                }
+
+                // Class bound (may be empty) and interface bounds
+                while (pos < in.length() && peek() == ':') {
+                    copy();
+
+                    char c = peek();
+                    if (c == 'L' || c == '[' || c == 'T') {
+                        type();
+                    }
+                }
+            }
+
+            copy(); // >
+        }
+
+        private void type() {
+            char c = peek();
+            switch (c) {
+                case 'L':
+                    classType();
+                    break;
+                case '[':
+                    copy();
+                    type();
+                    break;
+                case 'T':
+                    // Type variable, no class names inside
+                    while (peek() != ';') {
+                        copy();
+                    }
+
+                    copy();
+                    break;
+                default:
+                    copy(); // Primitive or V
+            }
+        }
+
+        private void classType() {
+            copy(); // L
+
+            String name = identifier();
+            out.append(translateClass(name));
+
+            while (true) {
+                char c = peek();
+                if (c == '<') {
+                    typeArguments();
+                } else if (c == '.') {
+                    // Inner class of parameterized outer class: simple name is taken from renamed full name
+                    copy();
+
+                    String innerName = identifier();
+                    String renamedOuter = translateClass(name) + '$';
+                    name = name + '$' + innerName;
+                    String renamed = translateClass(name);
+
+                    int index = renamed.startsWith(renamedOuter) ? renamedOuter.length() : renamed.lastIndexOf('$') + 1;
+                    out.append(renamed, index, renamed.length());
+                } else {
+                    copy(); // ;
+                    return;
+                }
+            }
+        }
+
+        private void typeArguments() {
+            copy(); // <
+            while (peek() != '>') {
+                char c = peek();
+                if (c == '*') {
+                    copy();
+                } else {
+                    if (c == '+' || c == '-') {
+                        copy();
+                    }
+
+                    type();
+                }
+            }
+
+            copy(); // >
+        }
+
+        /// Class name or inner class simple name, ends before ';', '<' or '.'
+        private String identifier() {
+            int start = pos;
+            char c = peek();
+            while (c != ';' && c != '<' && c != '.') {
+                pos++;
+                c = peek();
+            }
+
+            return in.substring(start, pos);
+        }
+
+        private char peek() {
+            if (pos >= in.length()) {
+                throw new IllegalStateException("Malformed descriptor or signature: " + in);
+            }
+
+            return in.charAt(pos);
+        }
+
+        private void copy() {
+            out.append(peek());
+            pos++;
+        }
+    }
+}
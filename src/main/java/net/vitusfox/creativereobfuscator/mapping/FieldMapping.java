@@ -17,6 +17,11 @@ public class FieldMapping {
         deobfuscated = split[1];
     }
 
+    public FieldMapping(String obfuscated, String deobfuscated) {
+        this.obfuscated = obfuscated;
+        this.deobfuscated = deobfuscated;
+    }
+
     public String getObfuscated() {
         return obfuscated;
     }
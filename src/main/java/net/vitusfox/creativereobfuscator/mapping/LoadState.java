@@ -3,5 +3,6 @@ package net.vitusfox.creativereobfuscator.mapping;
 public enum LoadState {
 
     CREATED_NEW,
-    LOADED_FROM_FILE
+    LOADED_FROM_FILE,
+    LOADED_PREBUILT
 }
@@ -1,13 +1,18 @@
 package net.vitusfox.creativereobfuscator.mapping;
 
 import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
 import net.vitusfox.creativereobfuscator.mapping.convert.LegacyMappingConverter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class Mapping {
 
@@ -15,27 +20,50 @@ public class Mapping {
     public static int NOT_REOBFUSCATE_CLASSES = 1 << 1;
     public static int REVERSED_CLASSES = 1 << 2;
 
-    public static final String defaultTSRG;
-    public static final String forgeMappingsTSRG;
+    // Distinct method signatures of whole Minecraft mapping fit, so every signature is translated once
+    private static final int SIGNATURES_CACHE_SIZE = 1 << 16;
 
-    private static String getStringFromResource(String path) {
-        InputStream is = Mapping.class.getResourceAsStream(path);
+    /**
+     * @return Bundled MCP mappings in TSRG format. Loaded on first call
+     */
+    public static String getDefaultTSRG() {
+        return DefaultTSRGHolder.TSRG;
+    }
 
-        StringBuilder builder = new StringBuilder();
-        try {
-            assert is != null;
-            int c = is.read();
-            while (c != -1) {
-                builder.append((char) c);
-                c = is.read();
-            }
+    /**
+     * @return Bundled Mojang mappings (server and client) converted to TSRG format. Converted on first call
+     */
+    public static String getForgeMappingsTSRG() {
+        return ForgeMappingsTSRGHolder.TSRG;
+    }
+
+    /// Holders are initialized by JVM on first access only, so touching Mapping does not load any resources
+    private static class DefaultTSRGHolder {
+
+        private static final String TSRG = getStringFromResource("/mcp_mappings.tsrg");
+    }
+
+    private static class ForgeMappingsTSRGHolder {
+
+        private static final String TSRG = new LegacyMappingConverter(getStringFromResource("/server_mappings.txt"),
+                getStringFromResource("/client_mappings.txt")).convertAndMerge();
+    }
 
-            is.close();
+    private static String getStringFromResource(String path) {
+        try (InputStream is = getResourceStream(path)) {
+            return new String(Util.readFully(is), StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    static InputStream getResourceStream(String path) {
+        InputStream is = Mapping.class.getResourceAsStream(path);
+        if (is == null) {
+            throw new IllegalStateException("Resource " + path + " is not found");
+        }
 
-        return builder.toString();
+        return new BufferedInputStream(is, 1 << 16);
     }
 
     /**
@@ -52,30 +80,27 @@ public class Mapping {
         }
 
         if (loading) {
-            FileReader reader = new FileReader(saveFile);
+            File binaryFile = BinaryMapping.getCacheFile(saveFile);
+            long hash = BinaryMapping.hash(saveFile);
 
-            StringBuilder builder = new StringBuilder();
-
-            int c = reader.read();
-            while (c != -1) {
-                builder.append((char) c);
-                c = reader.read();
+            Mapping cached = readCache(binaryFile, hash);
+            if (cached != null) {
+                return new Pair<>(LoadState.LOADED_FROM_FILE, cached);
             }
 
-            reader.close();
+            String tsrg = new String(Files.readAllBytes(saveFile.toPath()), StandardCharsets.UTF_8);
+            Mapping mapping = new Mapping(tsrg, 0).freeze();
+            writeCache(mapping, hash, binaryFile);
 
-            return new Pair<>(LoadState.LOADED_FROM_FILE, new Mapping(builder.toString(), 0));
+            return new Pair<>(LoadState.LOADED_FROM_FILE, mapping);
         } else {
-            LegacyMappingConverter converter = new LegacyMappingConverter(getStringFromResource("/server_mappings.txt"),
-                    getStringFromResource("/client_mappings.txt"));
-            String ret = converter.convertAndMerge();
-
-            Mapping legacy = new Mapping(ret, Mapping.REVERSED_CLASSES);
-            Mapping mapping = new Mapping(getStringFromResource("/mcp_mappings.tsrg"), Mapping.REVERSED_CLASSES)
-                    .deobfuscateSignatures();
+            LoadState state = LoadState.LOADED_PREBUILT;
+            Mapping joined = PrebuiltMapping.load();
 
-            MappingMerger merger = new MappingMerger(legacy, mapping);
-            Mapping joined = merger.merge(0).anonymizeClasses();
+            if (joined == null) {
+                state = LoadState.CREATED_NEW;
+                joined = createReobfuscationMapping();
+            }
 
             if (saveFile != null) {
                 if (!saveFile.exists()) {
@@ -85,12 +110,41 @@ public class Mapping {
                 }
 
                 joined.save(saveFile);
+                writeCache(joined, BinaryMapping.hash(saveFile), BinaryMapping.getCacheFile(saveFile));
             }
 
-            return new Pair<>(LoadState.CREATED_NEW, joined);
+            return new Pair<>(state, joined.freeze());
+        }
+    }
+
+    /// Unreadable cache is a miss, mapping is loaded from TSRG file
+    @Nullable
+    private static Mapping readCache(File binaryFile, long hash) {
+        try {
+            return BinaryMapping.read(binaryFile, hash);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /// Cache only speeds up next load, so mapping is returned even if cache could not be written (e.g. read-only directory)
+    private static void writeCache(Mapping mapping, long hash, File binaryFile) {
+        try {
+            BinaryMapping.write(mapping, hash, binaryFile);
+        } catch (IOException e) {
+            // Next load parses TSRG file and tries again
         }
     }
 
+    /**
+     * Creates mapping for reobfuscation from bundled Mojang and MCP mappings. May take some time,
+     * {@link #getReobfuscationMapping(File)} uses mapping prebuilt at build time when possible.
+     * Independent stages run in parallel, see {@link ReobfuscationMappingBuilder} for timings of stages
+     */
+    public static Mapping createReobfuscationMapping() throws IOException {
+        return new ReobfuscationMappingBuilder().build();
+    }
+
     /**
      * Loading from file or creating new mapping for reobfuscation.
      * Creation may take some time
@@ -104,70 +158,48 @@ public class Mapping {
         }
     }
 
-    static {
-        defaultTSRG = getStringFromResource("/mcp_mappings.tsrg");
-        forgeMappingsTSRG = new LegacyMappingConverter(getStringFromResource("/server_mappings.txt"),
-                getStringFromResource("/client_mappings.txt")).convertAndMerge();
-    }
-
     private final HashMap<String, ClassMapping> classes = new HashMap<>();
 
     private final boolean reversed;
     private final boolean reobfuscateClasses;
     private final boolean reversedClasses;
     private final int flags;
+    private boolean frozen;
+    @Nullable
+    private volatile Mapping inverse;
 
     public Mapping(String tsrg, int flags) {
-        this.flags = flags;
-        reobfuscateClasses = (flags & NOT_REOBFUSCATE_CLASSES) == NOT_REOBFUSCATE_CLASSES;
-        reversed = (flags & Mapping.REVERSE_MAPPINGS) == Mapping.REVERSE_MAPPINGS;
-        reversedClasses = (flags & REVERSED_CLASSES) == Mapping.REVERSED_CLASSES;
-
-        ClassMapping.Builder builder = null;
-        for (String s : tsrg.split("\n")) {
-            if (s.trim().isEmpty()) {
-                continue;
-            }
-
-            // Class definition
-            if (!s.startsWith("\t")) {
-                if (MappingCheckers.isClass(s)) {
-                    String[] split = s.split(" ");
+        this(flags);
 
-                    if (split.length != 2) {
-                        throw new IllegalStateException("Invalid size of splitted class definer! Got: " + split.length + ", needs 2");
-                    }
-
-                    if (builder != null) {
-                        add(builder.build());
-                    }
-
-                    builder = getBuilder(split[0], split[1]);
-
-                    continue;
-                }
-            }
-
-            if (builder == null) {
-                throw new IllegalStateException("ClassBuilder is not defined on scope somewhere with line " + s);
-            }
+        MappingLoader loader = new MappingLoader(this);
+        TsrgReader.read(tsrg, loader);
+        loader.finish();
+    }
 
-            // Method and fields definition
-            MappingCheckers.Type type = MappingCheckers.getType(s);
+    /**
+     * Reads TSRG mapping from reader. Reader is not closed
+     */
+    public Mapping(Reader tsrg, int flags) throws IOException {
+        this(flags);
 
-            if (type == MappingCheckers.Type.NONE) {
-                throw new IllegalStateException("Unknown type of string " + s);
-            }
+        MappingLoader loader = new MappingLoader(this);
+        TsrgReader.read(tsrg, loader);
+        loader.finish();
+    }
 
-            if (type == MappingCheckers.Type.FIELD) {
-                builder.addField(new FieldMapping(s));
-            } else if (type == MappingCheckers.Type.METHOD) {
-                builder.addMethod(new MethodMapping(s));
-            }
-        }
+    private Mapping(int flags) {
+        this.flags = flags;
+        reobfuscateClasses = (flags & NOT_REOBFUSCATE_CLASSES) == NOT_REOBFUSCATE_CLASSES;
+        reversed = (flags & Mapping.REVERSE_MAPPINGS) == Mapping.REVERSE_MAPPINGS;
+        reversedClasses = (flags & REVERSED_CLASSES) == Mapping.REVERSED_CLASSES;
     }
 
     public void add(ClassMapping mapping) {
+        if (frozen) {
+            throw new IllegalStateException("Mapping is frozen");
+        }
+
+        inverse = null;
 
         if (reobfuscateClasses != reversed) {
             classes.put(mapping.getDeobfuscatedClass(), mapping);
@@ -206,13 +238,75 @@ public class Mapping {
 
         Mapping mapping = new Mapping("", flags);
 
-        for (ClassMapping classMapping : classes.values()) {
+        for (ClassMapping classMapping : getClasses().values()) {
             mapping.add(classMapping.withNewCreditnails(classMapping.getDeobfuscatedClass(), classMapping.getDeobfuscatedClass()));
         }
 
         return mapping;
     }
 
+    /**
+     * Creates immutable compact copy of this mapping for long-lived use (e.g. by reobfuscator after loading).
+     * Members are stored in flat open-addressing tables instead of HashMaps of Pairs, and equal names and
+     * descriptors of all classes are stored as one String instance. Lookups work the same way and do not allocate,
+     * {@link ClassMapping#getFields()} and {@link ClassMapping#getMethods()} return new copies.
+     * Frozen mapping can not be changed by {@link #add(ClassMapping)}
+     * @return Frozen copy, or this mapping if it is frozen already
+     */
+    public Mapping freeze() {
+        if (frozen) {
+            return this;
+        }
+
+        Mapping mapping = new Mapping(flags);
+
+        HashMap<String, String> pool = new HashMap<>();
+        for (Map.Entry<String, ClassMapping> entry : getClasses().entrySet()) {
+            mapping.classes.put(MemberTable.intern(pool, entry.getKey()), entry.getValue().freeze(pool));
+        }
+
+        mapping.frozen = true;
+        return mapping;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /// Creates frozen mapping of ready frozen classes, e.g. read by BinaryMapping. Classes are not copied
+    static Mapping ofFrozen(int flags, List<ClassMapping> classes) {
+        Mapping mapping = new Mapping(flags);
+        for (ClassMapping classMapping : classes) {
+            mapping.add(classMapping);
+        }
+
+        mapping.frozen = true;
+        return mapping;
+    }
+
+    /**
+     * Returns view of the opposite direction, e.g. obfuscated -> named for deobfuscating crash logs and classes.
+     * View is created in O(1) and shares storage of this mapping: class index is built on first lookup, and member
+     * tables of a class get reverse index over the same names on first lookup of the class. Method descriptors are
+     * translated to names of the opposite side. View is cached, {@code inverse().inverse()} is this mapping.
+     * Mapping must not be changed while view is used
+     * @return Immutable view. If several classes have the same result name, one of them is kept. If several members
+     * of a class have the same result name, the first one of member table is kept
+     */
+    public Mapping inverse() {
+        Mapping result = inverse;
+        if (result == null) {
+            result = new Inverse(this);
+            inverse = result;
+        }
+
+        return result;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
     public HashMap<String, ClassMapping> getClasses() {
         return classes;
     }
@@ -231,48 +325,163 @@ public class Mapping {
         Mapping mapping = new Mapping("", flags);
 
         HashMap<String, String> obfuscatedSignatures = new HashMap<>(); // Obfuscated -> Deobfuscated
-        for (Map.Entry<String, ClassMapping> mappingEntry : classes.entrySet()) {
+        for (Map.Entry<String, ClassMapping> mappingEntry : getClasses().entrySet()) {
             obfuscatedSignatures.put(mappingEntry.getKey(), mappingEntry.getValue().getDeobfuscatedClass());
         }
 
-        for (Map.Entry<String, ClassMapping> mappingEntry : classes.entrySet()) {
-            mapping.add(mappingEntry.getValue().deobfuscateMethodsSignature(obfuscatedSignatures));
+        // Shared by all classes, the same signatures repeat in many classes. Classes are independent, dict is only read
+        DescriptorTranslator translator = new DescriptorTranslator(obfuscatedSignatures::get, SIGNATURES_CACHE_SIZE);
+        List<ClassMapping> deobfuscated = getClasses().values().parallelStream()
+                .map(classMapping -> classMapping.deobfuscateMethodsSignature(translator))
+                .collect(Collectors.toList());
+
+        for (ClassMapping classMapping : deobfuscated) {
+            mapping.add(classMapping);
         }
 
         return mapping;
     }
 
-    public void save(File file) throws IOException {
-        if (file.exists()) {
-            if (!file.delete()) {
-                throw new IllegalStateException("Could not delete old file with name " + file);
+    /**
+     * Digest of mapping content, independent of insertion order. Equal mappings have equal fingerprints,
+     * e.g. for keys of caches of reobfuscated classes
+     * @return SHA-256 of flags and sorted classes and members
+     */
+    public byte[] fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        update(digest, Integer.toString(flags));
+        HashMap<String, ClassMapping> classes = getClasses();
+        for (String name : new TreeSet<>(classes.keySet())) {
+            ClassMapping classMapping = classes.get(name);
+            update(digest, name);
+            update(digest, classMapping.getObfuscatedClass());
+            update(digest, classMapping.getDeobfuscatedClass());
+
+            for (Map.Entry<String, String> field : new TreeMap<>(classMapping.getFields()).entrySet()) {
+                update(digest, field.getKey());
+                update(digest, field.getValue());
+            }
+
+            List<Map.Entry<Pair<String, String>, String>> methods = new ArrayList<>(classMapping.getMethods().entrySet());
+            methods.sort(Comparator.comparing((Map.Entry<Pair<String, String>, String> e) -> e.getKey().getFirst())
+                    .thenComparing(e -> e.getKey().getSecond()));
+            for (Map.Entry<Pair<String, String>, String> method : methods) {
+                update(digest, method.getKey().getFirst());
+                update(digest, method.getKey().getSecond());
+                update(digest, method.getValue());
             }
         }
 
-        if (!file.createNewFile()) {
-            throw new IllegalStateException("Could not create new file with name " + file);
+        return digest.digest();
+    }
+
+    /// Strings are separated by zero byte, so ("ab", "c") and ("a", "bc") give different digests
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Saves mapping in TSRG format, see {@link TsrgWriter}. File is replaced atomically
+     */
+    public void save(File file) throws IOException {
+        save(file, false);
+    }
+
+    /**
+     * Saves mapping in TSRG format, see {@link TsrgWriter}. File is replaced atomically
+     * @param sorted If true, classes and members are sorted, so repeated saves of equal mappings are byte-identical
+     */
+    public void save(File file, boolean sorted) throws IOException {
+        TsrgWriter.write(this, file, sorted);
+    }
+
+    /// Lookups are served from original mapping through indexes built on demand
+    private static class Inverse extends Mapping {
+
+        private final Mapping original;
+        private final ConcurrentHashMap<String, ClassMapping> inverted = new ConcurrentHashMap<>();
+        private volatile DescriptorTranslator translator;
+        private volatile HashMap<String, String> index; // Result class name -> original key
+        private volatile HashMap<String, ClassMapping> all;
+
+        private Inverse(Mapping original) {
+            super(original.getFlags() ^ REVERSE_MAPPINGS);
+            this.original = original;
+        }
+
+        @Override
+        public void add(ClassMapping mapping) {
+            throw new UnsupportedOperationException("Inverse mapping is a view, add classes to original mapping");
         }
 
-        StringBuilder builder = new StringBuilder();
+        @Override
+        public boolean isFrozen() {
+            return true;
+        }
+
+        @Override
+        public Mapping inverse() {
+            return original;
+        }
 
-        for (ClassMapping classMapping : classes.values()) {
-            builder.append(classMapping.getObfuscatedClass()).append(" ")
-                    .append(classMapping.getDeobfuscatedClass()).append("\n");
+        @Nullable
+        @Override
+        public ClassMapping getByName(String obfuscated) {
+            String key = getIndex().get(obfuscated);
+            return key == null ? null : inverted.computeIfAbsent(key, this::invert);
+        }
 
-            for (Map.Entry<String, String> field : classMapping.getFields().entrySet()) {
-                builder.append("\t").append(field.getKey()).append(" ").append(field.getValue()).append("\n");
+        /**
+         * @return All classes. Every class is inverted on first call
+         */
+        @Override
+        public HashMap<String, ClassMapping> getClasses() {
+            HashMap<String, ClassMapping> result = all;
+            if (result == null) {
+                HashMap<String, String> index = getIndex();
+                result = new HashMap<>(Util.capacity(index.size()));
+                for (Map.Entry<String, String> entry : index.entrySet()) {
+                    result.put(entry.getKey(), inverted.computeIfAbsent(entry.getValue(), this::invert));
+                }
+
+                all = result;
             }
 
-            for (Map.Entry<Pair<String, String>, String> method : classMapping.getMethods().entrySet()) {
-                builder.append("\t").append(method.getKey().getFirst()).append(" ")
-                        .append(method.getKey().getSecond()).append(" ")
-                        .append(method.getValue()).append("\n");
+            return result;
+        }
+
+        private HashMap<String, String> getIndex() {
+            HashMap<String, String> result = index;
+            if (result == null) {
+                synchronized (this) {
+                    result = index;
+                    if (result == null) {
+                        HashMap<String, ClassMapping> originalClasses = original.getClasses();
+                        result = new HashMap<>(Util.capacity(originalClasses.size()));
+                        for (Map.Entry<String, ClassMapping> entry : originalClasses.entrySet()) {
+                            result.putIfAbsent(entry.getValue().getObfuscatedClass(), entry.getKey());
+                        }
+
+                        translator = new DescriptorTranslator(original);
+                        index = result;
+                    }
+                }
             }
+
+            return result;
         }
 
-        FileOutputStream stream = new FileOutputStream(file);
-        stream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
-        stream.flush();
-        stream.close();
+        /// Result name of original class is key of inverted class, and original key is its result
+        private ClassMapping invert(String key) {
+            ClassMapping classMapping = original.getByName(key);
+            return classMapping.inverse(key, classMapping.getObfuscatedClass(), translator);
+        }
     }
 }
@@ -0,0 +1,51 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+/**
+ * Wall times of stages of {@link ReobfuscationMappingBuilder#build()}. Stages run concurrently, so their times
+ * overlap and their sum is bigger than total time
+ */
+public class MappingBuildReport {
+
+    private final long[] startNanos;
+    private final long[] endNanos;
+    private final long totalNanos;
+
+    /**
+     * @param startNanos Start of every stage since start of build, by {@link MappingBuildStage#ordinal()}
+     * @param endNanos End of every stage since start of build
+     */
+    public MappingBuildReport(long[] startNanos, long[] endNanos, long totalNanos) {
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return Wall time of stage, from start of its first task to end of its last task
+     */
+    public long getNanos(MappingBuildStage stage) {
+        return endNanos[stage.ordinal()] - startNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return Start of stage since start of build
+     */
+    public long getStartNanos(MappingBuildStage stage) {
+        return startNanos[stage.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("Mapping built in %.1f ms", totalNanos / 1_000_000D));
+        for (MappingBuildStage stage : MappingBuildStage.values()) {
+            builder.append('\n').append(String.format("%s: %.1f ms (%.1f - %.1f ms)", stage, getNanos(stage) / 1_000_000D,
+                    startNanos[stage.ordinal()] / 1_000_000D, endNanos[stage.ordinal()] / 1_000_000D));
+        }
+
+        return builder.toString();
+    }
+}
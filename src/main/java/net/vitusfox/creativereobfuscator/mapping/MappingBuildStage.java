@@ -0,0 +1,23 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+/**
+ * Stages of reobfuscation mapping construction, timed by {@link ReobfuscationMappingBuilder}.
+ * Parse stages and DEOBFUSCATE_SIGNATURES run at the same time, merge waits for all of them
+ */
+public enum MappingBuildStage {
+
+    /// Reading and parsing of Mojang server mappings, in parallel chunks
+    PARSE_SERVER,
+    /// Reading and parsing of Mojang client mappings, in parallel chunks
+    PARSE_CLIENT,
+    /// Joining server and client classes, client classes replace server ones
+    JOIN_MOJANG,
+    /// Reading and parsing of MCP mappings, in parallel chunks
+    PARSE_MCP,
+    /// Translating classes in MCP method signatures
+    DEOBFUSCATE_SIGNATURES,
+    /// Merging Mojang and MCP mappings
+    MERGE,
+    /// Replacing obfuscated class names
+    ANONYMIZE
+}
@@ -0,0 +1,49 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+/**
+ * Collects parsed entries into class mappings of target mapping. Entries are applied with flags of target mapping.
+ * Used by TSRG and ProGuard readers, call {@link #finish()} after last entry
+ */
+public class MappingLoader implements TsrgReader.Visitor {
+
+    private final Mapping mapping;
+    private ClassMapping.Builder builder;
+
+    public MappingLoader(Mapping mapping) {
+        this.mapping = mapping;
+    }
+
+    @Override
+    public void visitClass(String obfuscated, String deobfuscated) {
+        finish();
+        builder = mapping.getBuilder(obfuscated, deobfuscated);
+    }
+
+    @Override
+    public void visitField(String obfuscated, String deobfuscated) {
+        checkScope(obfuscated);
+        builder.addField(new FieldMapping(obfuscated, deobfuscated));
+    }
+
+    @Override
+    public void visitMethod(String obfuscated, String signature, String deobfuscated) {
+        checkScope(obfuscated);
+        builder.addMethod(new MethodMapping(obfuscated, signature, deobfuscated));
+    }
+
+    private void checkScope(String entry) {
+        if (builder == null) {
+            throw new IllegalStateException("ClassBuilder is not defined on scope somewhere with entry " + entry);
+        }
+    }
+
+    /**
+     * Adds last class to mapping
+     */
+    public void finish() {
+        if (builder != null) {
+            mapping.add(builder.build());
+            builder = null;
+        }
+    }
+}
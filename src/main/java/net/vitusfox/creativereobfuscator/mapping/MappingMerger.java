@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class MappingMerger {
 
@@ -28,6 +29,7 @@ public class MappingMerger {
         Mapping mapping = new Mapping("", flags);
 
         HashMap<String, String> dict = new HashMap<>(); // Deobfuscated legacy -> Deobfuscated MCP (classes)
+        List<Pair<ClassMapping, ClassMapping>> mergeable = new ArrayList<>(); // Legacy -> MCP
         // Legacy mapping is bigger
         for (Map.Entry<String, ClassMapping> mappingEntry : legacyMapping.getClasses().entrySet()) {
             ClassMapping mcpClassMapping = mcpMapping.getByName(mappingEntry.getKey());
@@ -39,80 +41,84 @@ public class MappingMerger {
 
             // Adding new class signature...
             dict.put(mappingEntry.getValue().getDeobfuscatedClass(), mcpClassMapping.getDeobfuscatedClass());
+            mergeable.add(new Pair<>(mappingEntry.getValue(), mcpClassMapping));
         }
 
-
         // Okay. We collected all non-merged classes. Let's go merge it!
-        for (Map.Entry<String, ClassMapping> mappingEntry : legacyMapping.getClasses().entrySet()) {
-            ClassMapping mcpClassMapping = mcpMapping.getByName(mappingEntry.getKey());
-
-            if (mcpClassMapping == null) {
-                continue; // Non-possible for merge
-            }
+        // Classes are independent now, dict is only read
+        DescriptorTranslator translator = new DescriptorTranslator(dict::get, DescriptorTranslator.DEFAULT_CACHE_SIZE);
+        List<ClassMapping> merged = mergeable.parallelStream()
+                .map(pair -> mergeClass(pair.getFirst(), pair.getSecond(), dict, translator))
+                .collect(Collectors.toList());
+
+        for (ClassMapping classMapping : merged) {
+            mapping.add(classMapping);
+        }
 
-            // Deobfuscated and merged classMapping with merged signatures
-            ClassMapping mergedClass = mappingEntry.getValue().deobfuscateMethodsSignature(dict);
+        return mapping;
+    }
 
+    private ClassMapping mergeClass(ClassMapping legacyClassMapping, ClassMapping mcpClassMapping, HashMap<String, String> dict,
+                                    DescriptorTranslator translator) {
+        // Deobfuscated and merged classMapping with merged signatures
+        ClassMapping mergedClass = legacyClassMapping.deobfuscateMethodsSignature(translator);
 
-            // Added new naming for class mapping. Let's go add new naming for classes and fields
-            // f_99999_1_ -> getBlock
 
-            // By default, mappings looks like getBlock -> aaa
-            // Deobfuscated -> obfuscated
-            // We need to change obfuscated names to seared naming
+        // Added new naming for class mapping. Let's go add new naming for classes and fields
+        // f_99999_1_ -> getBlock
 
-            HashMap<String, String> fields = new HashMap<>();
-            HashMap<Pair<String, String>, String> methods = new HashMap<>();
+        // By default, mappings looks like getBlock -> aaa
+        // Deobfuscated -> obfuscated
+        // We need to change obfuscated names to seared naming
 
-            // Merging fields...
-            for (Map.Entry<String, String> entry : mappingEntry.getValue().getFields().entrySet()) {
-                String seared = null;
+        // Obfuscated -> seared. If some seared names have the same obfuscated name, the last one wins
+        HashMap<String, String> searedFields = reverse(mcpClassMapping.getFields());
+        HashMap<String, Pair<String, String>> searedMethods = reverse(mcpClassMapping.getMethods());
 
-                for (Map.Entry<String, String> mcpEntry : mcpClassMapping.getFields().entrySet()) {
-                    if (mcpEntry.getValue().equals(entry.getValue())) {
-                        seared = mcpEntry.getKey();
-                    }
-                }
+        HashMap<String, String> fields = new HashMap<>();
+        HashMap<Pair<String, String>, String> methods = new HashMap<>();
 
-                if (seared == null) {
-                    fields.put(entry.getKey(), entry.getValue());
-                    continue;
-                }
+        // Merging fields...
+        for (Map.Entry<String, String> entry : legacyClassMapping.getFields().entrySet()) {
+            String seared = searedFields.get(entry.getValue());
 
-                fields.put(entry.getKey(), seared);
+            if (seared == null) {
+                fields.put(entry.getKey(), entry.getValue());
+                continue;
             }
 
-            // Merging classes...
-            for (Map.Entry<Pair<String, String>, String> entry : mappingEntry.getValue().getMethods().entrySet()) {
-                Pair<String, String> seared = null;
+            fields.put(entry.getKey(), seared);
+        }
 
-                for (Map.Entry<Pair<String, String>, String> mcpEntry : mcpClassMapping.getMethods().entrySet()) {
+        // Merging classes...
+        for (Map.Entry<Pair<String, String>, String> entry : legacyClassMapping.getMethods().entrySet()) {
+            Pair<String, String> seared = searedMethods.get(entry.getValue());
 
-                    if (mcpEntry.getValue().equals(entry.getValue())) {
-                        seared = mcpEntry.getKey();
-                    }
-                }
+            if (seared == null) {
+                methods.put(entry.getKey(), entry.getValue());
+                continue;
+            }
 
-                if (seared == null) {
-                    methods.put(entry.getKey(), entry.getValue());
-                    continue;
-                }
+            methods.put(new Pair<>(entry.getKey().getFirst(), seared.getSecond()), seared.getFirst());
+        }
 
-                methods.put(new Pair<>(entry.getKey().getFirst(), seared.getSecond()), seared.getFirst());
-            }
+        return mergedClass
+                .withNewCreditnails(legacyClassMapping.getObfuscatedClass(),
+                        Util.nonNullOrDefault(
+                                dict.get(legacyClassMapping.getDeobfuscatedClass()),
+                                legacyClassMapping.getDeobfuscatedClass()))
+                .withNewMappings(fields, methods);
+    }
 
-            ClassMapping merged = mergedClass
-                    .withNewCreditnails(mappingEntry.getValue().getObfuscatedClass(),
-                            Util.nonNullOrDefault(
-                                    dict.get(mappingEntry.getValue().getDeobfuscatedClass()),
-                                    mappingEntry.getValue().getDeobfuscatedClass()))
-                    .withNewMappings(fields, methods);
+    /// Value -> key index. Keeps the last key in iteration order for duplicated values
+    private static <K> HashMap<String, K> reverse(HashMap<K, String> map) {
+        HashMap<String, K> reversed = new HashMap<>(Util.capacity(map.size()));
 
-            mapping.add(merged);
+        for (Map.Entry<K, String> entry : map.entrySet()) {
+            reversed.put(entry.getValue(), entry.getKey());
         }
 
-
-        return mapping;
+        return reversed;
     }
 
     private String reobfuscateSignature(String signature, HashMap<String, String> dict) {
@@ -0,0 +1,206 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Open-addressing member table keyed by name (fields) or by (name, descriptor) (methods). Lookup does not allocate:
+ * no key object is created, hashes of entries are precomputed and names are compared by reference first.
+ * Entries are stored in flat arrays, so table is much smaller than HashMap. Immutable after creation
+ */
+class MemberTable {
+
+    private final String[] names;
+    @Nullable
+    private final String[] signatures;
+    private final String[] values;
+    private final int[] hashes;
+    // Entry index + 1, 0 is empty slot. Size is power of two, at most half full
+    private final int[] slots;
+    private final int mask;
+
+    private MemberTable(int size, boolean methods) {
+        this(new String[size], methods ? new String[size] : null, new String[size]);
+    }
+
+    private MemberTable(String[] names, @Nullable String[] signatures, String[] values) {
+        this.names = names;
+        this.signatures = signatures;
+        this.values = values;
+        hashes = new int[names.length];
+
+        int capacity = Integer.highestOneBit(Math.max(names.length, 1) * 2 - 1) << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param pool Strings pool, equal strings of all tables are stored once. Nullable
+     */
+    static MemberTable ofFields(Map<String, String> fields, @Nullable Map<String, String> pool) {
+        MemberTable table = new MemberTable(fields.size(), false);
+
+        int i = 0;
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            table.put(i++, intern(pool, entry.getKey()), null, intern(pool, entry.getValue()));
+        }
+
+        return table;
+    }
+
+    /**
+     * @param pool Strings pool, equal strings of all tables are stored once. Nullable
+     */
+    static MemberTable ofMethods(Map<Pair<String, String>, String> methods, @Nullable Map<String, String> pool) {
+        MemberTable table = new MemberTable(methods.size(), true);
+
+        int i = 0;
+        for (Map.Entry<Pair<String, String>, String> entry : methods.entrySet()) {
+            table.put(i++, intern(pool, entry.getKey().getFirst()), intern(pool, entry.getKey().getSecond()),
+                    intern(pool, entry.getValue()));
+        }
+
+        return table;
+    }
+
+    /**
+     * Creates table of ready entries, e.g. read by {@link BinaryMapping}. Arrays are not copied
+     * @param signatures Descriptors of methods. Null for fields
+     */
+    static MemberTable of(String[] names, @Nullable String[] signatures, String[] values) {
+        MemberTable table = new MemberTable(names, signatures, values);
+        for (int i = 0; i < names.length; i++) {
+            table.index(i);
+        }
+
+        return table;
+    }
+
+    static String intern(@Nullable Map<String, String> pool, String s) {
+        if (pool == null) {
+            return s;
+        }
+
+        String pooled = pool.putIfAbsent(s, s);
+        return pooled == null ? s : pooled;
+    }
+
+    /**
+     * Creates table of the opposite direction, value -> name. Name and value arrays of this table are shared, only
+     * index is built. If several entries have the same value, the first one of this table is found
+     * @param translator Translator of method descriptors to class names of the opposite side. Unchanged and malformed
+     *                   descriptors are shared too. Not used for fields
+     */
+    MemberTable inverse(DescriptorTranslator translator) {
+        String[] translated = null;
+        if (signatures != null) {
+            translated = new String[signatures.length];
+            for (int i = 0; i < signatures.length; i++) {
+                try {
+                    translated[i] = translator.translate(signatures[i]);
+                } catch (IllegalStateException e) {
+                    translated[i] = signatures[i];
+                }
+            }
+        }
+
+        return of(values, translated, names);
+    }
+
+    private void put(int index, String name, @Nullable String signature, String value) {
+        names[index] = name;
+        values[index] = value;
+        if (signatures != null) {
+            signatures[index] = signature;
+        }
+
+        index(index);
+    }
+
+    /// Earlier entries take earlier slots of probe sequence, so of equal keys the first entry is found
+    private void index(int index) {
+        hashes[index] = signatures == null ? hash(names[index]) : hash(names[index], signatures[index]);
+
+        int slot = hashes[index] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slots[slot] = index + 1;
+    }
+
+    @Nullable
+    String get(String name) {
+        int hash = hash(name);
+
+        int slot = hash & mask;
+        int entry = slots[slot];
+        while (entry != 0) {
+            int index = entry - 1;
+            if (hashes[index] == hash && names[index].equals(name)) {
+                return values[index];
+            }
+
+            slot = (slot + 1) & mask;
+            entry = slots[slot];
+        }
+
+        return null;
+    }
+
+    @Nullable
+    String get(String name, String signature) {
+        int hash = hash(name, signature);
+
+        int slot = hash & mask;
+        int entry = slots[slot];
+        while (entry != 0) {
+            int index = entry - 1;
+            if (hashes[index] == hash && names[index].equals(name) && signatures[index].equals(signature)) {
+                return values[index];
+            }
+
+            slot = (slot + 1) & mask;
+            entry = slots[slot];
+        }
+
+        return null;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    HashMap<String, String> toFieldMap() {
+        HashMap<String, String> fields = new HashMap<>(Util.capacity(names.length));
+        for (int i = 0; i < names.length; i++) {
+            fields.putIfAbsent(names[i], values[i]);
+        }
+
+        return fields;
+    }
+
+    HashMap<Pair<String, String>, String> toMethodMap() {
+        HashMap<Pair<String, String>, String> methods = new HashMap<>(Util.capacity(names.length));
+        for (int i = 0; i < names.length; i++) {
+            methods.putIfAbsent(new Pair<>(names[i], signatures[i]), values[i]);
+        }
+
+        return methods;
+    }
+
+    /// String hashes are cached by String itself, so this is a field read and mixing
+    private static int hash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(String name, String signature) {
+        int hash = name.hashCode() * 31 + signature.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -19,6 +19,12 @@ public class MethodMapping {
         deobfuscatedName = split[2];
     }
 
+    public MethodMapping(String obfuscatedName, String signature, String deobfuscatedName) {
+        this.obfuscatedName = obfuscatedName;
+        this.signature = signature;
+        this.deobfuscatedName = deobfuscatedName;
+    }
+
     public String getDeobfuscatedName() {
         return deobfuscatedName;
     }
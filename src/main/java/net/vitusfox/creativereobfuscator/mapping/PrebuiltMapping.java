@@ -0,0 +1,53 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reobfuscation mapping created at build time (Gradle task generatePrebuiltMapping) and packed into JAR
+ * in binary form. Loading it does not need any conversion or merging
+ */
+public class PrebuiltMapping {
+
+    public static final String RESOURCE = "/prebuilt_mapping.bin";
+
+    /**
+     * @return Prebuilt mapping. Nullable. If null, JAR was built without it (e.g. running from IDE)
+     */
+    @Nullable
+    public static Mapping load() throws IOException {
+        try (InputStream is = PrebuiltMapping.class.getResourceAsStream(RESOURCE)) {
+            if (is == null) {
+                return null;
+            }
+
+            return BinaryMapping.read(ByteBuffer.wrap(Util.readFully(is)));
+        }
+    }
+
+    /**
+     * Generates prebuilt mapping
+     * @param args Output file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: PrebuiltMapping <output file>");
+        }
+
+        File output = new File(args[0]);
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IllegalStateException("Could not create directory " + parent);
+        }
+
+        // Source hash is not checked for bundled resource, it is built from the same sources as the JAR
+        ReobfuscationMappingBuilder builder = new ReobfuscationMappingBuilder();
+        BinaryMapping.write(builder.build(), 0, output);
+        System.out.println(builder.getReport());
+    }
+}
@@ -0,0 +1,203 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.convert.ProGuardMappingReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Creates reobfuscation mapping from bundled Mojang and MCP mappings as graph of tasks: Mojang server and client
+ * mappings and MCP mapping (with signatures deobfuscation) are built at the same time, merge waits for both.
+ * Every file is split into chunks at class lines, chunks are parsed in parallel and joined in file order, so the
+ * result is the same as of sequential parsing. Wall time of every stage is kept in {@link #getReport()}
+ */
+public class ReobfuscationMappingBuilder {
+
+    // Smaller chunks cost more in tasks and joining than they save
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final Executor executor;
+    private final int parallelism;
+    private final AtomicLongArray starts = new AtomicLongArray(MappingBuildStage.values().length);
+    private final AtomicLongArray ends = new AtomicLongArray(MappingBuildStage.values().length);
+    private volatile long origin;
+    private volatile MappingBuildReport report;
+
+    public ReobfuscationMappingBuilder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor Executor of stages and chunks. Build waits for tasks, so it must not be called from the only
+     *                 thread of executor
+     */
+    public ReobfuscationMappingBuilder(Executor executor) {
+        this.executor = executor;
+        this.parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Builds mapping, the same as sequential conversion, merge and anonymization of bundled mappings
+     */
+    public synchronized Mapping build() throws IOException {
+        for (int i = 0; i < starts.length(); i++) {
+            starts.set(i, Long.MAX_VALUE);
+            ends.set(i, Long.MIN_VALUE);
+        }
+        origin = System.nanoTime();
+
+        try {
+            CompletableFuture<Mapping> server = parse(MappingBuildStage.PARSE_SERVER, "/server_mappings.txt",
+                    ProGuardMappingReader::read);
+            CompletableFuture<Mapping> client = parse(MappingBuildStage.PARSE_CLIENT, "/client_mappings.txt",
+                    ProGuardMappingReader::read);
+            CompletableFuture<Mapping> legacy = server.thenCombineAsync(client, (serverMapping, clientMapping) ->
+                    timed(MappingBuildStage.JOIN_MOJANG, () -> join(Arrays.asList(serverMapping, clientMapping))), executor);
+
+            CompletableFuture<Mapping> mcp = parse(MappingBuildStage.PARSE_MCP, "/mcp_mappings.tsrg", TsrgReader::read)
+                    .thenApplyAsync(mapping -> timed(MappingBuildStage.DEOBFUSCATE_SIGNATURES,
+                            mapping::deobfuscateSignatures), executor);
+
+            return legacy.thenCombineAsync(mcp, (legacyMapping, mcpMapping) -> timed(MappingBuildStage.MERGE,
+                            () -> new MappingMerger(legacyMapping, mcpMapping).merge(0)), executor)
+                    .thenApplyAsync(mapping -> timed(MappingBuildStage.ANONYMIZE, mapping::anonymizeClasses), executor)
+                    .join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException("Could not build mapping", cause);
+        } finally {
+            long total = System.nanoTime() - origin;
+            long[] startNanos = new long[starts.length()];
+            long[] endNanos = new long[ends.length()];
+            for (int i = 0; i < startNanos.length; i++) {
+                // Stage not started because of failure of another one
+                startNanos[i] = starts.get(i) == Long.MAX_VALUE ? 0 : starts.get(i);
+                endNanos[i] = ends.get(i) == Long.MIN_VALUE ? startNanos[i] : ends.get(i);
+            }
+
+            report = new MappingBuildReport(startNanos, endNanos, total);
+        }
+    }
+
+    /**
+     * @return Timings of last build. Null before first build
+     */
+    public MappingBuildReport getReport() {
+        return report;
+    }
+
+    /// Reads resource, then parses its chunks in parallel and joins them in order
+    private CompletableFuture<Mapping> parse(MappingBuildStage stage, String resource, ChunkReader reader) {
+        return CompletableFuture.supplyAsync(() -> timed(stage, () -> readResource(resource)), executor)
+                .thenCompose(text -> {
+                    List<CompletableFuture<Mapping>> chunks = new ArrayList<>();
+                    int[] bounds = split(text);
+                    for (int i = 0; i < bounds.length - 1; i++) {
+                        int start = bounds[i];
+                        int end = bounds[i + 1];
+                        chunks.add(CompletableFuture.supplyAsync(() -> timed(stage, () -> {
+                            Mapping chunk = new Mapping("", Mapping.REVERSED_CLASSES);
+                            MappingLoader loader = new MappingLoader(chunk);
+                            reader.read(text, start, end, loader);
+                            loader.finish();
+                            return chunk;
+                        }), executor));
+                    }
+
+                    return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+                        List<Mapping> parts = new ArrayList<>(chunks.size());
+                        for (CompletableFuture<Mapping> chunk : chunks) {
+                            parts.add(chunk.join());
+                        }
+
+                        return timed(stage, () -> join(parts));
+                    });
+                });
+    }
+
+    /// Chunk bounds, every chunk starts with class line (not indented), so members stay with their class
+    private int[] split(String text) {
+        int chunks = Math.max(1, Math.min(parallelism * 2, text.length() / MIN_CHUNK_SIZE));
+
+        int[] bounds = new int[chunks + 1];
+        int count = 1;
+        for (int i = 1; i < chunks; i++) {
+            int bound = nextClassLine(text, Math.max(text.length() / chunks * i, bounds[count - 1]));
+            if (bound > bounds[count - 1] && bound < text.length()) {
+                bounds[count++] = bound;
+            }
+        }
+
+        bounds[count++] = text.length();
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static int nextClassLine(String text, int from) {
+        int index = text.indexOf('\n', from);
+        while (index != -1 && index + 1 < text.length()) {
+            char c = text.charAt(index + 1);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return index + 1;
+            }
+
+            index = text.indexOf('\n', index + 1);
+        }
+
+        return text.length();
+    }
+
+    /// Later parts replace classes of earlier ones, as one loader reading all parts in order does
+    private static Mapping join(List<Mapping> parts) {
+        Mapping mapping = new Mapping("", Mapping.REVERSED_CLASSES);
+        for (Mapping part : parts) {
+            for (ClassMapping classMapping : part.getClasses().values()) {
+                mapping.add(classMapping);
+            }
+        }
+
+        return mapping;
+    }
+
+    private <T> T timed(MappingBuildStage stage, Supplier<T> task) {
+        starts.accumulateAndGet(stage.ordinal(), System.nanoTime() - origin, Math::min);
+        try {
+            return task.get();
+        } finally {
+            ends.accumulateAndGet(stage.ordinal(), System.nanoTime() - origin, Math::max);
+        }
+    }
+
+    private static String readResource(String resource) {
+        try (InputStream is = Mapping.getResourceStream(resource)) {
+            return new String(Util.readFully(is), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface ChunkReader {
+
+        void read(String text, int start, int end, TsrgReader.Visitor visitor);
+    }
+}
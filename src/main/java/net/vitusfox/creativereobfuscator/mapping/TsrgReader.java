@@ -0,0 +1,195 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single-pass TSRG tokenizer. Every line is classified and split while scanning it once, without regular expressions
+ * and intermediate arrays. Only the resulting names are allocated.
+ * <p>
+ * Accepted lines (same rules as {@link MappingCheckers}):
+ * <pre>
+ * obfuscatedClass deobfuscatedClass
+ * \tobfuscatedField deobfuscatedField
+ * \tobfuscatedMethod (signature)returns deobfuscatedMethod
+ * </pre>
+ * Blank lines are skipped, trailing \r is ignored. Any other line is rejected with {@link IllegalStateException}
+ */
+public class TsrgReader {
+
+    public interface Visitor {
+
+        void visitClass(String obfuscated, String deobfuscated);
+
+        void visitField(String obfuscated, String deobfuscated);
+
+        void visitMethod(String obfuscated, String signature, String deobfuscated);
+    }
+
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    private final Visitor visitor;
+
+    private TsrgReader(Visitor visitor) {
+        this.visitor = visitor;
+    }
+
+    public static void read(CharSequence tsrg, Visitor visitor) {
+        read(tsrg, 0, tsrg.length(), visitor);
+    }
+
+    /**
+     * Reads part of TSRG text, e.g. one of chunks parsed in parallel
+     * @param start Index of first char of first line
+     * @param end Index after last char of last line
+     */
+    public static void read(CharSequence tsrg, int start, int end, Visitor visitor) {
+        TsrgReader reader = new TsrgReader(visitor);
+
+        while (start < end) {
+            int lineEnd = indexOfNewLine(tsrg, start, end);
+            reader.line(tsrg, start, lineEnd);
+            start = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Reads TSRG from reader chunk by chunk. Reader is not closed
+     */
+    public static void read(Reader tsrg, Visitor visitor) throws IOException {
+        TsrgReader reader = new TsrgReader(visitor);
+        StringBuilder line = new StringBuilder(128);
+        char[] buffer = new char[BUFFER_SIZE];
+
+        int read = tsrg.read(buffer);
+        while (read != -1) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    line.append(buffer, start, i - start);
+                    reader.line(line, 0, line.length());
+                    line.setLength(0);
+                    start = i + 1;
+                }
+            }
+
+            line.append(buffer, start, read - start);
+            read = tsrg.read(buffer);
+        }
+
+        reader.line(line, 0, line.length());
+    }
+
+    private static int indexOfNewLine(CharSequence s, int from, int end) {
+        if (s instanceof String) {
+            int index = ((String) s).indexOf('\n', from);
+            return index == -1 || index > end ? end : index;
+        }
+
+        for (int i = from; i < end; i++) {
+            if (s.charAt(i) == '\n') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    private void line(CharSequence s, int start, int end) {
+        if (end > start && s.charAt(end - 1) == '\r') {
+            end--;
+        }
+
+        if (isBlank(s, start, end)) {
+            return;
+        }
+
+        if (s.charAt(start) != '\t') {
+            // Class: two tokens
+            int firstEnd = tokenEnd(s, start, end);
+            if (firstEnd == start || firstEnd == end || s.charAt(firstEnd) != ' ') {
+                throw unknown(s, start, end);
+            }
+
+            int second = firstEnd + 1;
+            if (tokenEnd(s, second, end) != end || second == end) {
+                throw unknown(s, start, end);
+            }
+
+            visitor.visitClass(token(s, start, firstEnd), token(s, second, end));
+            return;
+        }
+
+        int first = start + 1;
+        int firstEnd = tokenEnd(s, first, end);
+        if (firstEnd == first || firstEnd == end || s.charAt(firstEnd) != ' ') {
+            throw unknown(s, start, end);
+        }
+
+        int second = firstEnd + 1;
+        int secondEnd = tokenEnd(s, second, end);
+        if (secondEnd == second) {
+            throw unknown(s, start, end);
+        }
+
+        if (secondEnd == end) {
+            // Field: two tokens after tab
+            visitor.visitField(token(s, first, firstEnd), token(s, second, end));
+            return;
+        }
+
+        // Method: name, signature and new name
+        int third = secondEnd + 1;
+        if (s.charAt(secondEnd) != ' ' || third == end || tokenEnd(s, third, end) != end
+                || !isSignature(s, second, secondEnd)) {
+            throw unknown(s, start, end);
+        }
+
+        visitor.visitMethod(token(s, first, firstEnd), token(s, second, secondEnd), token(s, third, end));
+    }
+
+    private static boolean isBlank(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /// Index of first space or tab after start, or end
+    private static int tokenEnd(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == ' ' || c == '\t') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /// (arguments)returns, returns is not empty
+    private static boolean isSignature(CharSequence s, int start, int end) {
+        if (s.charAt(start) != '(') {
+            return false;
+        }
+
+        for (int i = end - 2; i > start; i--) {
+            if (s.charAt(i) == ')') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String token(CharSequence s, int start, int end) {
+        return s.subSequence(start, end).toString();
+    }
+
+    private static IllegalStateException unknown(CharSequence s, int start, int end) {
+        return new IllegalStateException("Unknown type of string " + s.subSequence(start, end));
+    }
+}
@@ -0,0 +1,178 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Streaming TSRG writer, counterpart of {@link TsrgReader}. Lines are encoded as UTF-8 straight into one reused
+ * buffer, which is written to channel when full, so the whole file is never held in memory
+ */
+public class TsrgWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Comparator<Map.Entry<Pair<String, String>, String>> METHOD_ORDER = Comparator
+            .comparing((Map.Entry<Pair<String, String>, String> entry) -> entry.getKey().getFirst())
+            .thenComparing(entry -> entry.getKey().getSecond());
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * @param channel Output channel. Closed by {@link #close()}
+     */
+    public TsrgWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes mapping to file. Mapping is written to temporary file next to target, which is then moved to target,
+     * so target file is never left half-written
+     * @param sorted If true, classes and members are sorted, so equal mappings give byte-identical files
+     */
+    public static void write(Mapping mapping, File file, boolean sorted) throws IOException {
+        Util.writeAtomically(file.getAbsoluteFile().toPath(), channel -> {
+            try (TsrgWriter writer = new TsrgWriter(channel)) {
+                writer.write(mapping, sorted);
+            }
+        });
+    }
+
+    /**
+     * @param sorted If true, classes and members are sorted, so equal mappings give byte-identical output
+     */
+    public void write(Mapping mapping, boolean sorted) throws IOException {
+        Collection<ClassMapping> classes = mapping.getClasses().values();
+        if (sorted) {
+            classes = new TreeMap<>(mapping.getClasses()).values();
+        }
+
+        for (ClassMapping classMapping : classes) {
+            writeClass(classMapping.getObfuscatedClass(), classMapping.getDeobfuscatedClass());
+
+            Set<Map.Entry<String, String>> fields = classMapping.getFields().entrySet();
+            if (sorted) {
+                fields = new TreeMap<>(classMapping.getFields()).entrySet();
+            }
+
+            for (Map.Entry<String, String> field : fields) {
+                writeField(field.getKey(), field.getValue());
+            }
+
+            Collection<Map.Entry<Pair<String, String>, String>> methods = classMapping.getMethods().entrySet();
+            if (sorted) {
+                List<Map.Entry<Pair<String, String>, String>> sortedMethods = new ArrayList<>(methods);
+                sortedMethods.sort(METHOD_ORDER);
+                methods = sortedMethods;
+            }
+
+            for (Map.Entry<Pair<String, String>, String> method : methods) {
+                writeMethod(method.getKey().getFirst(), method.getKey().getSecond(), method.getValue());
+            }
+        }
+    }
+
+    public void writeClass(String obfuscated, String deobfuscated) throws IOException {
+        put(obfuscated);
+        put((byte) ' ');
+        put(deobfuscated);
+        put((byte) '\n');
+    }
+
+    public void writeField(String obfuscated, String deobfuscated) throws IOException {
+        put((byte) '\t');
+        put(obfuscated);
+        put((byte) ' ');
+        put(deobfuscated);
+        put((byte) '\n');
+    }
+
+    public void writeMethod(String obfuscated, String signature, String deobfuscated) throws IOException {
+        put((byte) '\t');
+        put(obfuscated);
+        put((byte) ' ');
+        put(signature);
+        put((byte) ' ');
+        put(deobfuscated);
+        put((byte) '\n');
+    }
+
+    /**
+     * Writes buffered bytes to channel
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /// Names are almost always ASCII, other strings are encoded by String itself
+    private void put(String s) throws IOException {
+        int length = s.length();
+        if (length > buffer.capacity()) {
+            putEncoded(s);
+            return;
+        }
+
+        if (buffer.remaining() < length) {
+            flush();
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(buffer.position() - i);
+                putEncoded(s);
+                return;
+            }
+
+            buffer.put((byte) c);
+        }
+    }
+
+    private void putEncoded(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < bytes.length) {
+            flush();
+        }
+
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+
+            return;
+        }
+
+        buffer.put(bytes);
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+
+        buffer.put(b);
+    }
+}
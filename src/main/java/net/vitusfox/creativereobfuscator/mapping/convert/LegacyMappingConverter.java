@@ -1,5 +1,10 @@
 package net.vitusfox.creativereobfuscator.mapping.convert;
 
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.mapping.MappingLoader;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,6 +31,24 @@ public class LegacyMappingConverter {
         return toTSRG(serverMappings) + "\n" + toTSRG(clientMappings);
     }
 
+    /**
+     * Streaming variant of {@code new Mapping(convertAndMerge(), flags)}. Mappings are read line by line and put
+     * straight into class mappings, TSRG text is never created. Streams are not closed
+     * @param flags Flags of created mapping
+     * @param mappings Mojang mappings in merge order (e.g. server, client). Later classes replace earlier ones
+     */
+    public static Mapping toMapping(int flags, InputStream... mappings) throws IOException {
+        Mapping mapping = new Mapping("", flags);
+        MappingLoader loader = new MappingLoader(mapping);
+
+        for (InputStream stream : mappings) {
+            ProGuardMappingReader.read(stream, loader);
+        }
+
+        loader.finish();
+        return mapping;
+    }
+
     private boolean isEquals(Pattern p, String s) {
         Matcher matcher = p.matcher(s);
         return matcher.find();
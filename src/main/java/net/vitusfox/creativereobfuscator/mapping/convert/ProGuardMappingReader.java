@@ -0,0 +1,203 @@
+package net.vitusfox.creativereobfuscator.mapping.convert;
+
+import net.vitusfox.creativereobfuscator.mapping.TsrgReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader of Mojang (ProGuard) mappings. Reads mappings line by line and reports every entry as TSRG entry:
+ * <pre>
+ * com.mojang.math.Matrix3f -> a:                    class a com/mojang/math/Matrix3f
+ *     float m00 -> a                                field a m00
+ *     105:112:void transpose(int,float[]) -> b      method b (I[F)V transpose
+ * </pre>
+ * Constructors and static initializers are skipped, as in {@link LegacyMappingConverter}
+ */
+public class ProGuardMappingReader {
+
+    private static final String ARROW = " -> ";
+    private static final String INDENT = "    ";
+
+    private final TsrgReader.Visitor visitor;
+    private final StringBuilder signature = new StringBuilder(64);
+
+    private ProGuardMappingReader(TsrgReader.Visitor visitor) {
+        this.visitor = visitor;
+    }
+
+    /**
+     * Reads mappings from stream. Stream is not closed
+     * @param mappings client_mappings.txt or server_mappings.txt content
+     * @param visitor Receiver of converted entries
+     */
+    public static void read(InputStream mappings, TsrgReader.Visitor visitor) throws IOException {
+        ProGuardMappingReader reader = new ProGuardMappingReader(visitor);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(mappings, StandardCharsets.UTF_8), 1 << 16);
+
+        String line = lines.readLine();
+        while (line != null) {
+            reader.line(line);
+            line = lines.readLine();
+        }
+    }
+
+    /**
+     * Reads part of mappings text, e.g. one of chunks parsed in parallel
+     * @param start Index of first char of first line
+     * @param end Index after last char of last line
+     */
+    public static void read(String mappings, int start, int end, TsrgReader.Visitor visitor) {
+        ProGuardMappingReader reader = new ProGuardMappingReader(visitor);
+
+        while (start < end) {
+            int lineEnd = mappings.indexOf('\n', start);
+            if (lineEnd == -1 || lineEnd > end) {
+                lineEnd = end;
+            }
+
+            // Trailing \r is removed like by BufferedReader
+            int contentEnd = lineEnd > start && mappings.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            reader.line(mappings.substring(start, contentEnd));
+            start = lineEnd + 1;
+        }
+    }
+
+    private void line(String s) {
+        if (s.isEmpty() || s.startsWith("#") || s.trim().isEmpty()) {
+            return;
+        }
+
+        int arrow = s.indexOf(ARROW);
+        if (arrow == -1) {
+            return; // Not an entry, ignored like by LegacyMappingConverter
+        }
+
+        String obfuscated = s.substring(arrow + ARROW.length()).trim();
+
+        if (!s.startsWith(INDENT)) {
+            // Class, e.g. com.mojang.math.Matrix3f -> a:
+            if (!obfuscated.endsWith(":")) {
+                return;
+            }
+
+            visitor.visitClass(obfuscated.substring(0, obfuscated.length() - 1).replace('.', '/'),
+                    s.substring(0, arrow).trim().replace('.', '/'));
+            return;
+        }
+
+        int start = INDENT.length();
+        int space = s.indexOf(' ', start);
+        if (space == -1 || space >= arrow) {
+            throw new IllegalStateException("Could not find type of member " + s);
+        }
+
+        int open = s.indexOf('(', space);
+        if (open == -1 || open > arrow) {
+            // Field, e.g.     float m00 -> a
+            visitor.visitField(obfuscated, s.substring(space + 1, arrow).trim());
+            return;
+        }
+
+        // Method, e.g.     105:112:void transpose(int,float[]) -> b
+        int close = s.indexOf(')', open);
+        if (close == -1 || close > arrow) {
+            throw new IllegalStateException("Could not find arguments of method " + s);
+        }
+
+        String name = s.substring(space + 1, open).trim();
+        if (name.equals("<init>") || name.equals("<clinit>")) {
+            return;
+        }
+
+        visitor.visitMethod(obfuscated, signature(s, skipLines(s, start, space), space, open + 1, close), name);
+    }
+
+    /// Skips line numbers prefix (e.g. 105:112:) of return type
+    private static int skipLines(String s, int start, int end) {
+        int lastColon = s.lastIndexOf(':', end - 1);
+        return lastColon >= start ? lastColon + 1 : start;
+    }
+
+    private String signature(String s, int returnsStart, int returnsEnd, int argumentsStart, int argumentsEnd) {
+        signature.setLength(0);
+        signature.append('(');
+
+        int start = argumentsStart;
+        while (start < argumentsEnd) {
+            int comma = s.indexOf(',', start);
+            int end = comma == -1 || comma > argumentsEnd ? argumentsEnd : comma;
+
+            appendType(s, start, end);
+            start = end + 1;
+        }
+
+        signature.append(')');
+        appendType(s, returnsStart, returnsEnd);
+
+        return signature.toString();
+    }
+
+    private void appendType(String s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+
+        while (end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+
+        // Arrays: int[][] -> [[I
+        while (end - start > 2 && s.charAt(end - 2) == '[' && s.charAt(end - 1) == ']') {
+            signature.append('[');
+            end -= 2;
+        }
+
+        char primitive = primitive(s, start, end);
+        if (primitive != 0) {
+            signature.append(primitive);
+            return;
+        }
+
+        signature.append('L');
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            signature.append(c == '.' ? '/' : c);
+        }
+        signature.append(';');
+    }
+
+    private static char primitive(String s, int start, int end) {
+        switch (end - start) {
+            case 3:
+                return s.startsWith("int", start) ? 'I' : 0;
+            case 4:
+                if (s.startsWith("byte", start)) {
+                    return 'B';
+                } else if (s.startsWith("char", start)) {
+                    return 'C';
+                } else if (s.startsWith("long", start)) {
+                    return 'J';
+                } else if (s.startsWith("void", start)) {
+                    return 'V';
+                }
+                return 0;
+            case 5:
+                if (s.startsWith("float", start)) {
+                    return 'F';
+                } else if (s.startsWith("short", start)) {
+                    return 'S';
+                }
+                return 0;
+            case 6:
+                return s.startsWith("double", start) ? 'D' : 0;
+            case 7:
+                return s.startsWith("boolean", start) ? 'Z' : 0;
+            default:
+                return 0;
+        }
+    }
+}
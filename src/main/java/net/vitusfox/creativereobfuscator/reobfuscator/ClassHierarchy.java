@@ -0,0 +1,382 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.LruCache;
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Superclass and interface index of classes. Filled from class headers only, classes are never loaded.
+ * Classes are registered by their own name and by name after reobfuscation, so the index can be asked about
+ * both deobfuscated and reobfuscated names. Unknown classes are looked up in parent hierarchy, then read from
+ * resources of class loader (if any). Registered classes are kept, classes read from resources and unknown classes
+ * are kept in bounded LRU cache. Registering class which differs from one already seen increases
+ * {@link #getGeneration() generation}, so resolutions made before are dropped. Thread-safe
+ */
+public class ClassHierarchy {
+
+    public static final String OBJECT = "java/lang/Object";
+
+    private static final Entry MISSING = new Entry(null, new String[0], false);
+    private static final int LOADED_CACHE_SIZE = 1 << 14;
+
+    private final ConcurrentHashMap<String, Entry> classes = new ConcurrentHashMap<>();
+    private final LruCache<String, Entry> loaded = new LruCache<>(LOADED_CACHE_SIZE);
+    private final AtomicLong generation = new AtomicLong();
+    // Count of changes of registered classes, fingerprint is recomputed when it differs
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Fingerprint fingerprint;
+    @Nullable
+    private final MappingRemapper remapper;
+    @Nullable
+    private final ClassHierarchy parent;
+    // Weak, hierarchy may be kept in map weakly keyed by the same loader. Cleared loader is the same as no loader
+    @Nullable
+    private final WeakReference<ClassLoader> resources;
+    private volatile MemberResolver resolver;
+
+    /**
+     * @param mapping Mapping for registering classes by reobfuscated names too. Nullable
+     * @param parent Hierarchy asked before resources, e.g. shared hierarchy of libraries. Nullable
+     * @param resources Class loader for reading unknown classes, referenced weakly. Nullable, if null unknown classes
+     *                  are treated as direct subclasses of Object
+     */
+    public ClassHierarchy(@Nullable Mapping mapping, @Nullable ClassHierarchy parent, @Nullable ClassLoader resources) {
+        this.remapper = mapping == null ? null : new MappingRemapper(mapping);
+        this.parent = parent;
+        this.resources = resources == null ? null : new WeakReference<>(resources);
+    }
+
+    public ClassHierarchy(@Nullable Mapping mapping) {
+        this(mapping, null, ClassHierarchy.class.getClassLoader());
+    }
+
+    /**
+     * Registers class by its header
+     */
+    public void addClass(byte[] bytecode) {
+        ClassReader reader = new ClassReader(bytecode);
+        addClass(reader.getClassName(), reader.getSuperName(), reader.getInterfaces(),
+                (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+    }
+
+    public void addClass(String name, @Nullable String superName, String[] interfaces, boolean isInterface) {
+        Entry entry = new Entry(superName, interfaces, isInterface);
+        register(name, entry);
+
+        if (remapper != null) {
+            String reobfuscated = remapper.map(name);
+            if (!reobfuscated.equals(name)) {
+                register(reobfuscated, entry.remap(remapper));
+            }
+        }
+    }
+
+    private void register(String name, Entry entry) {
+        Entry previous = classes.put(name, entry);
+        Entry cached = loaded.remove(name);
+        if (!entry.equals(previous)) {
+            modifications.incrementAndGet();
+        }
+
+        if ((previous != null && !previous.equals(entry)) || (cached != null && !cached.equals(entry))) {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registers headers of all classes of JAR, e.g. Minecraft JAR, so members inherited from its classes are resolved
+     */
+    public void addLibrary(File jar) throws IOException {
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                try (InputStream is = zip.getInputStream(entry)) {
+                    addClass(Util.readFully(is));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Member resolver over this hierarchy. Created once per mapping and shared, so resolutions are cached
+     * for all classes reobfuscated with this hierarchy
+     */
+    public MemberResolver getResolver(Mapping mapping) {
+        MemberResolver current = resolver;
+        if (current == null || current.getMapping() != mapping) {
+            current = new MemberResolver(mapping, this);
+            resolver = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * @return Counter increased every time a class already seen by this hierarchy or its parent changes. Results
+     * computed from this hierarchy are stale when generation differs
+     */
+    public long getGeneration() {
+        return generation.get() + (parent == null ? 0 : parent.getGeneration());
+    }
+
+    /**
+     * @return SHA-256 of registered classes (e.g. added libraries) and of parent fingerprint. Classes read from
+     * resources are not included. Recomputed only after registered classes change
+     */
+    public byte[] getFingerprint() {
+        byte[] parentFingerprint = parent == null ? new byte[0] : parent.getFingerprint();
+        long count = modifications.get();
+
+        Fingerprint current = fingerprint;
+        if (current == null || current.modifications != count || !Arrays.equals(current.parent, parentFingerprint)) {
+            current = new Fingerprint(count, parentFingerprint, computeFingerprint(parentFingerprint));
+            fingerprint = current;
+        }
+
+        return current.digest.clone();
+    }
+
+    private byte[] computeFingerprint(byte[] parentFingerprint) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        digest.update(parentFingerprint);
+        // Sorted, order of registration does not matter
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(classes).entrySet()) {
+            Entry value = entry.getValue();
+            String header = entry.getKey() + ' ' + value.isInterface + ' ' + value.superName + ' '
+                    + String.join(" ", value.interfaces);
+            digest.update(header.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * @return Super name. Nullable. If null, class is java/lang/Object or unknown
+     */
+    @Nullable
+    public String getSuperName(String name) {
+        Entry entry = getEntry(name);
+        return entry == MISSING ? null : entry.superName;
+    }
+
+    /**
+     * @return Direct interfaces of class. Empty if class is unknown
+     */
+    public String[] getInterfaces(String name) {
+        return getEntry(name).interfaces;
+    }
+
+    public boolean isInterface(String name) {
+        return getEntry(name).isInterface;
+    }
+
+    /**
+     * @return true, if class is registered or was found in parent or resources
+     */
+    public boolean contains(String name) {
+        return getEntry(name) != MISSING;
+    }
+
+    /**
+     * Common superclass for frame computation, the same rules as {@link org.objectweb.asm.ClassWriter#getCommonSuperClass}.
+     * Types and result are names after reobfuscation, as writer of reobfuscated class asks
+     * @throws TypeNotPresentException If type or one of its superclasses is unknown, as ClassWriter does for class it
+     * can not load. Guessed Object would give frames failing verification only when class is loaded
+     */
+    public String getCommonSuperClass(String type1, String type2) {
+        if (type1.equals(type2)) {
+            return type1;
+        }
+
+        requireKnown(type1);
+        requireKnown(type2);
+
+        if (isInterface(type1) || isInterface(type2)) {
+            return OBJECT;
+        }
+
+        List<String> supers1 = getSuperClasses(type1);
+        List<String> supers2 = getSuperClasses(type2);
+
+        if (supers2.contains(type1)) {
+            return type1;
+        }
+
+        if (supers1.contains(type2)) {
+            return type2;
+        }
+
+        for (String superName : supers1) {
+            if (supers2.contains(superName)) {
+                return superName;
+            }
+        }
+
+        return OBJECT;
+    }
+
+    /// Class itself and all its superclasses, by names after reobfuscation. Mod class keeps its name, but is registered
+    /// with named superclass, so its chain meets chain of reobfuscated class only after superclasses are renamed
+    private List<String> getSuperClasses(String name) {
+        List<String> supers = new ArrayList<>();
+
+        String current = name;
+        while (current != null) {
+            String reobfuscated = remapper == null ? current : remapper.map(current);
+            if (supers.contains(reobfuscated)) {
+                break;
+            }
+
+            // Library classes, e.g. of Minecraft JAR, may be known by reobfuscated name only
+            if (!contains(current)) {
+                current = reobfuscated;
+            }
+
+            requireKnown(current);
+            supers.add(reobfuscated);
+            current = getSuperName(current);
+        }
+
+        return supers;
+    }
+
+    private void requireKnown(String name) {
+        if (!name.equals(OBJECT) && !contains(name)) {
+            throw new TypeNotPresentException(name, null);
+        }
+    }
+
+    private Entry getEntry(String name) {
+        Entry entry = classes.get(name);
+        if (entry != null) {
+            return entry;
+        }
+
+        if (parent != null) {
+            entry = parent.getEntry(name);
+            if (entry != MISSING) {
+                return entry;
+            }
+        }
+
+        entry = loaded.get(name);
+        if (entry == null) {
+            entry = readEntry(name);
+            Entry current = loaded.putIfAbsent(name, entry);
+            if (current != null) {
+                entry = current;
+            }
+        }
+
+        return entry;
+    }
+
+    private Entry readEntry(String name) {
+        ClassLoader loader = resources == null ? null : resources.get();
+        if (name.equals(OBJECT) || loader == null) {
+            return MISSING;
+        }
+
+        try (InputStream is = loader.getResourceAsStream(name + ".class")) {
+            if (is == null) {
+                return MISSING;
+            }
+
+            ClassReader reader = new ClassReader(Util.readFully(is));
+            return new Entry(reader.getSuperName(), reader.getInterfaces(),
+                    (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+        } catch (IOException | RuntimeException e) {
+            return MISSING; // Broken class is the same as unknown class here
+        }
+    }
+
+    private static class Fingerprint {
+
+        private final long modifications;
+        private final byte[] parent;
+        private final byte[] digest;
+
+        private Fingerprint(long modifications, byte[] parent, byte[] digest) {
+            this.modifications = modifications;
+            this.parent = parent;
+            this.digest = digest;
+        }
+    }
+
+    private static class Entry {
+
+        @Nullable
+        private final String superName;
+        private final String[] interfaces;
+        private final boolean isInterface;
+
+        private Entry(@Nullable String superName, String[] interfaces, boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+
+        private Entry remap(MappingRemapper remapper) {
+            String[] remappedInterfaces = new String[interfaces.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                remappedInterfaces[i] = remapper.map(interfaces[i]);
+            }
+
+            return new Entry(superName == null ? null : remapper.map(superName), remappedInterfaces, isInterface);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry entry = (Entry) o;
+            return isInterface == entry.isInterface && Objects.equals(superName, entry.superName)
+                    && Arrays.equals(interfaces, entry.interfaces);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(superName) * 31 + Arrays.hashCode(interfaces)) * 31 + (isInterface ? 1 : 0);
+        }
+    }
+}
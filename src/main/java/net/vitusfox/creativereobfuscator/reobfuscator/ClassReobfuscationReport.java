@@ -0,0 +1,85 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import java.util.Collections;
+import java.util.List;
+
+public class ClassReobfuscationReport {
+
+    private final String className;
+    private final String reobfuscatedName;
+    private final long[] phaseNanos;
+    private final int memberLookups;
+    private final int remappedMembers;
+    private final int ownerMisses;
+    private final List<String> missingMembers;
+
+    public ClassReobfuscationReport(String className, String reobfuscatedName, long[] phaseNanos, int memberLookups,
+                                    int remappedMembers, int ownerMisses, List<String> missingMembers) {
+        this.className = className;
+        this.reobfuscatedName = reobfuscatedName;
+        this.phaseNanos = phaseNanos;
+        this.memberLookups = memberLookups;
+        this.remappedMembers = remappedMembers;
+        this.ownerMisses = ownerMisses;
+        this.missingMembers = Collections.unmodifiableList(missingMembers);
+    }
+
+    /**
+     * @return Name of class before reobfuscation
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    public String getReobfuscatedName() {
+        return reobfuscatedName;
+    }
+
+    public long getNanos(ReobfuscationPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+
+        return total;
+    }
+
+    /**
+     * @return Count of member names looked up in mapping: declarations, instructions, handles
+     */
+    public int getMemberLookups() {
+        return memberLookups;
+    }
+
+    /**
+     * @return Count of member names changed by mapping
+     */
+    public int getRemappedMembers() {
+        return remappedMembers;
+    }
+
+    /**
+     * @return Count of distinct classes referenced by this class which are not in mapping (mod and JDK classes too)
+     */
+    public int getOwnerMisses() {
+        return ownerMisses;
+    }
+
+    /**
+     * @return Members of mapped classes which are not in mapping, as owner.name descriptor. Candidates for
+     * missing mappings
+     */
+    public List<String> getMissingMembers() {
+        return missingMembers;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d/%d members remapped, %d unmapped owners, %d missing members in %.3f ms",
+                className, remappedMembers, memberLookups, ownerMisses, missingMembers.size(), getTotalNanos() / 1_000_000D);
+    }
+}
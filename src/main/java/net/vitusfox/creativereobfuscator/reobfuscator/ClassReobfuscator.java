@@ -1,115 +1,467 @@
 package net.vitusfox.creativereobfuscator.reobfuscator;
 
 import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.DescriptorTranslator;
 import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class ClassReobfuscator {
 
+    /**
+     * Remaps class in one pass from ClassReader to ClassWriter through {@link ClassRemapper}, without ClassNode tree
+     */
+    public static final int STREAMING = 1;
+
+    /**
+     * Keeps stack map frames of class and only renames types in them instead of recomputing all frames.
+     * Renaming does not change control flow, so original frames stay valid. Max stack and locals are kept too
+     */
+    public static final int PRESERVE_FRAMES = 1 << 1;
+
+    /**
+     * Remaps members only if their exact owner has mapping of them, like old versions did. By default members
+     * inherited from mapped classes (e.g. call of Entity.tick() through mod subclass) and overriding methods are
+     * resolved through class hierarchy, see {@link MemberResolver}
+     */
+    public static final int EXACT_OWNERS = 1 << 2;
+
+    /**
+     * Rewrites every class. By default classes referencing no mapped class are returned as is after constant pool
+     * check, see {@link ConstantPoolScanner}
+     */
+    public static final int ALWAYS_REWRITE = 1 << 3;
+
     private final Mapping mappings;
+    private final ClassHierarchy hierarchy;
+    private final boolean streaming;
+    private final boolean preserveFrames;
+    private final boolean exactOwners;
+    private final boolean alwaysRewrite;
+    private final DescriptorTranslator translator;
+    private final ConstantPoolScanner scanner;
+    private final int flags;
+    @Nullable
+    private final ReobfuscatorHandler handler;
+    private volatile byte[] fingerprint;
 
     public ClassReobfuscator(Mapping mapping) {
+        this(mapping, 0);
+    }
+
+    /**
+     * @param mapping Mapping. Is shared, must not be changed while reobfuscating
+     * @param flags Mode flags, e.g. {@link #STREAMING} | {@link #PRESERVE_FRAMES}
+     */
+    public ClassReobfuscator(Mapping mapping, int flags) {
+        this(mapping, flags, new ClassHierarchy(mapping));
+    }
+
+    /**
+     * @param mapping Mapping. Is shared, must not be changed while reobfuscating
+     * @param flags Mode flags, e.g. {@link #STREAMING} | {@link #PRESERVE_FRAMES}
+     * @param hierarchy Default hierarchy for frame computation, when it is not given to {@link #reobfuscate(byte[], ClassHierarchy)}
+     */
+    public ClassReobfuscator(Mapping mapping, int flags, ClassHierarchy hierarchy) {
+        this(mapping, flags, hierarchy, null);
+    }
+
+    /**
+     * @param mapping Mapping. Is shared, must not be changed while reobfuscating
+     * @param flags Mode flags, e.g. {@link #STREAMING} | {@link #PRESERVE_FRAMES}
+     * @param hierarchy Default hierarchy for frame computation, when it is not given to {@link #reobfuscate(byte[], ClassHierarchy)}
+     * @param handler Listener of reobfuscated classes, e.g. {@link ReobfuscationMetrics}. Nullable. If null,
+     *                nothing is timed or reported
+     */
+    public ClassReobfuscator(Mapping mapping, int flags, ClassHierarchy hierarchy, @Nullable ReobfuscatorHandler handler) {
         this.mappings = mapping;
+        this.hierarchy = hierarchy;
+        this.streaming = (flags & STREAMING) == STREAMING;
+        this.preserveFrames = (flags & PRESERVE_FRAMES) == PRESERVE_FRAMES;
+        this.exactOwners = (flags & EXACT_OWNERS) == EXACT_OWNERS;
+        this.alwaysRewrite = (flags & ALWAYS_REWRITE) == ALWAYS_REWRITE;
+        this.translator = new DescriptorTranslator(mapping);
+        this.scanner = new ConstantPoolScanner(mapping);
+        this.flags = flags;
+        this.handler = handler;
+    }
+
+    /**
+     * @return true, if reobfuscation asks class hierarchy (frames are computed or members are resolved through
+     * hierarchy). If so, hierarchy should contain all classes of processed JAR before reobfuscation starts
+     */
+    public boolean needsHierarchy() {
+        return !preserveFrames || !exactOwners;
+    }
+
+    /**
+     * @return Digest of mapping and flags. Reobfuscators with equal fingerprints give equal output for equal classes
+     * and hierarchies. Computed once, so mapping must not be changed after first call
+     */
+    public byte[] getFingerprint() {
+        byte[] result = fingerprint;
+        if (result == null) {
+            byte[] mappingFingerprint = mappings.fingerprint();
+            result = Arrays.copyOf(mappingFingerprint, mappingFingerprint.length + 4);
+            for (int i = 0; i < 4; i++) {
+                result[mappingFingerprint.length + i] = (byte) (flags >>> (24 - i * 8));
+            }
+
+            fingerprint = result;
+        }
+
+        return result;
+    }
+
+    public Mapping getMapping() {
+        return mappings;
     }
 
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
 
     public byte[] reobfuscate(byte[] bytecode) {
+        return reobfuscate(bytecode, hierarchy);
+    }
+
+    /**
+     * @param bytecode Class to reobfuscate
+     * @param hierarchy Hierarchy of classes for frame computation and member resolution, e.g. all classes of processed JAR
+     * @return Reobfuscated class. The same array, if class references nothing mapped (unless {@link #ALWAYS_REWRITE})
+     */
+    public byte[] reobfuscate(byte[] bytecode, ClassHierarchy hierarchy) {
         ClassReader reader = new ClassReader(bytecode);
+        if (!alwaysRewrite && !scanner.referencesMapping(reader, exactOwners ? null : hierarchy.getResolver(mappings))) {
+            if (handler != null) {
+                handler.onClassSkipped(reader.getClassName());
+            }
+
+            return bytecode;
+        }
+
+        if (streaming) {
+            return reobfuscateStreaming(reader, hierarchy);
+        }
+
+        long start = time();
         ClassNode node = new ClassNode();
-        reader.accept(node, 0);
+        reader.accept(node, preserveFrames ? 0 : ClassReader.SKIP_FRAMES);
+        long parsed = time();
 
-        reobfuscateClass(node);
-        reobfuscateFields(node);
-        reobfuscateMethods(node);
-        reobfuscateMethodInstructions(node);
+        RemappingContext context = createContext(node.name, hierarchy);
+        reobfuscateClass(node, context);
+        reobfuscateFields(node, context);
+        reobfuscateMethods(node, context);
+        reobfuscateMethodInstructions(node, context);
+        long transformed = time();
 
-        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        ClassWriter writer = createWriter(null, hierarchy);
         node.accept(writer);
-        return writer.toByteArray();
+        byte[] reobfuscated = writer.toByteArray();
+
+        if (handler != null) {
+            report(context, node.name, start, parsed, transformed, time());
+        }
+
+        return reobfuscated;
+    }
+
+    private byte[] reobfuscateStreaming(ClassReader reader, ClassHierarchy hierarchy) {
+        long start = time();
+        // Writer copies constant pool of reader, so unchanged constants are not rebuilt
+        ClassWriter writer = createWriter(reader, hierarchy);
+
+        // Frames are remapped by ClassRemapper if kept, otherwise they are recomputed and no need to read them
+        RemappingContext context = createContext(reader.getClassName(), hierarchy);
+        reader.accept(new MappingClassRemapper(writer, context), preserveFrames ? 0 : ClassReader.SKIP_FRAMES);
+        long transformed = time();
+
+        byte[] reobfuscated = writer.toByteArray();
+
+        if (handler != null) {
+            report(context, context.map(context.getClassName()), start, start, transformed, time());
+        }
+
+        return reobfuscated;
+    }
+
+    private RemappingContext createContext(String className, ClassHierarchy hierarchy) {
+        MemberResolver resolver = hierarchy.getResolver(mappings);
+        // Misses are recorded for handler only, resolver tells whether supertypes outside mapping may declare them
+        return new RemappingContext(mappings, translator, className, exactOwners ? null : resolver,
+                handler != null ? resolver : null);
     }
 
-    private void reobfuscateClass(ClassNode node) {
+    /// Clock is read only if somebody listens
+    private long time() {
+        return handler == null ? 0 : System.nanoTime();
+    }
+
+    private void report(RemappingContext context, String reobfuscatedName, long start, long parsed, long transformed, long written) {
+        long[] phaseNanos = new long[ReobfuscationPhase.values().length];
+        phaseNanos[ReobfuscationPhase.PARSE.ordinal()] = parsed - start;
+        phaseNanos[ReobfuscationPhase.TRANSFORM.ordinal()] = transformed - parsed;
+        phaseNanos[ReobfuscationPhase.WRITE.ordinal()] = written - transformed;
+
+        handler.onClassReobfuscated(new ClassReobfuscationReport(context.getClassName(), reobfuscatedName, phaseNanos,
+                context.getMemberLookups(), context.getRemappedMembers(), context.getOwnerMisses(),
+                context.getMissingMembers()));
+    }
+
+    private ClassWriter createWriter(@Nullable ClassReader reader, ClassHierarchy hierarchy) {
+        if (preserveFrames) {
+            return new ClassWriter(reader, 0);
+        }
+
+        return new HierarchyClassWriter(reader, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, hierarchy);
+    }
+
+    private void reobfuscateClass(ClassNode node, RemappingContext context) {
         // Now mapping class
-        ClassMapping classMapping = mappings.getByName(node.name);
+        ClassMapping classMapping = context.getSelf();
         if (classMapping != null) {
             node.name = classMapping.getObfuscatedClass();
         }
 
         // Reobf superclass and interfaces
         if (node.superName != null) {
-            ClassMapping superMapping = mappings.getByName(node.superName);
-            if (superMapping != null) {
-                node.superName = superMapping.getObfuscatedClass();
-            }
+            node.superName = context.map(node.superName);
         }
 
         for (int i = 0; i < node.interfaces.size(); i++) {
-            String interfaceName = node.interfaces.get(i);
-            ClassMapping interfaceMapping = mappings.getByName(interfaceName);
-            if (interfaceMapping != null) {
-                node.interfaces.set(i, interfaceMapping.getObfuscatedClass());
+            node.interfaces.set(i, context.map(node.interfaces.get(i)));
+        }
+
+        node.signature = context.mapSignature(node.signature, false);
+
+        // Enclosing method is resolved by original owner and descriptor
+        if (node.outerClass != null) {
+            if (node.outerMethod != null) {
+                node.outerMethod = context.mapMethodName(node.outerClass, node.outerMethod, node.outerMethodDesc);
+                node.outerMethodDesc = context.mapMethodDesc(node.outerMethodDesc);
             }
+
+            node.outerClass = context.map(node.outerClass);
+        }
+
+        for (InnerClassNode innerClass : node.innerClasses) {
+            if (innerClass.innerName != null) {
+                innerClass.innerName = context.mapInnerClassName(innerClass.name, innerClass.outerName, innerClass.innerName);
+            }
+
+            innerClass.name = context.map(innerClass.name);
+            if (innerClass.outerName != null) {
+                innerClass.outerName = context.map(innerClass.outerName);
+            }
+        }
+
+        if (node.nestHostClass != null) {
+            node.nestHostClass = context.map(node.nestHostClass);
         }
+
+        reobfuscateNames(node.nestMembers, context);
+        reobfuscateNames(node.permittedSubclasses, context);
+
+        if (node.recordComponents != null) {
+            for (RecordComponentNode component : node.recordComponents) {
+                component.name = context.mapRecordComponentName(context.getClassName(), component.name, component.descriptor);
+                component.descriptor = context.mapDesc(component.descriptor);
+                component.signature = context.mapSignature(component.signature, true);
+                reobfuscateAnnotations(component.visibleAnnotations, context);
+                reobfuscateAnnotations(component.invisibleAnnotations, context);
+                reobfuscateAnnotations(component.visibleTypeAnnotations, context);
+                reobfuscateAnnotations(component.invisibleTypeAnnotations, context);
+            }
+        }
+
+        reobfuscateAnnotations(node.visibleAnnotations, context);
+        reobfuscateAnnotations(node.invisibleAnnotations, context);
+        reobfuscateAnnotations(node.visibleTypeAnnotations, context);
+        reobfuscateAnnotations(node.invisibleTypeAnnotations, context);
     }
 
-    private void reobfuscateFields(ClassNode node) {
+    private void reobfuscateFields(ClassNode node, RemappingContext context) {
         for (FieldNode field : node.fields) {
-            // Now class mapping
-            ClassMapping classMapping = mappings.getByName(node.name);
-            if (classMapping != null) {
-                // Renaming field
-                String deobfuscatedFieldName = classMapping.getFieldByName(field.name);
-                if (deobfuscatedFieldName != null) {
-                    field.name = deobfuscatedFieldName;
-                }
-            }
+            // Renaming field. Class is resolved by original name, node is already renamed
+            field.name = context.mapFieldName(context.getClassName(), field.name, field.desc);
+            field.desc = context.mapDesc(field.desc);
+            field.signature = context.mapSignature(field.signature, true);
+
+            reobfuscateAnnotations(field.visibleAnnotations, context);
+            reobfuscateAnnotations(field.invisibleAnnotations, context);
+            reobfuscateAnnotations(field.visibleTypeAnnotations, context);
+            reobfuscateAnnotations(field.invisibleTypeAnnotations, context);
         }
     }
 
-    private void reobfuscateMethods(ClassNode node) {
+    private void reobfuscateMethods(ClassNode node, RemappingContext context) {
         for (MethodNode method : node.methods) {
-            // Now mapping class
-            ClassMapping classMapping = mappings.getByName(node.name);
-            if (classMapping != null) {
-                // Renaming method
-                String deobfuscatedMethodName = classMapping.getMethodByName(method.name, method.desc);
-                if (deobfuscatedMethodName != null) {
-                    method.name = deobfuscatedMethodName;
+            // Renaming method, overridden methods of mapped superclasses are renamed too. Name is looked up by
+            // original descriptor, so descriptor is remapped after
+            method.name = context.mapMethodName(context.getClassName(), method.name, method.desc);
+            method.desc = context.mapMethodDesc(method.desc);
+            method.signature = context.mapSignature(method.signature, false);
+            reobfuscateNames(method.exceptions, context);
+
+            reobfuscateAnnotations(method.visibleAnnotations, context);
+            reobfuscateAnnotations(method.invisibleAnnotations, context);
+            reobfuscateAnnotations(method.visibleTypeAnnotations, context);
+            reobfuscateAnnotations(method.invisibleTypeAnnotations, context);
+            reobfuscateAnnotations(method.visibleLocalVariableAnnotations, context);
+            reobfuscateAnnotations(method.invisibleLocalVariableAnnotations, context);
+            reobfuscateParameterAnnotations(method.visibleParameterAnnotations, context);
+            reobfuscateParameterAnnotations(method.invisibleParameterAnnotations, context);
+            if (method.annotationDefault != null) {
+                method.annotationDefault = reobfuscateAnnotationValue(method.annotationDefault, context);
+            }
+
+            if (method.localVariables != null) {
+                for (LocalVariableNode variable : method.localVariables) {
+                    variable.desc = context.mapDesc(variable.desc);
+                    variable.signature = context.mapSignature(variable.signature, true);
+                }
+            }
+
+            for (TryCatchBlockNode tryCatch : method.tryCatchBlocks) {
+                if (tryCatch.type != null) {
+                    tryCatch.type = context.map(tryCatch.type);
                 }
+
+                reobfuscateAnnotations(tryCatch.visibleTypeAnnotations, context);
+                reobfuscateAnnotations(tryCatch.invisibleTypeAnnotations, context);
             }
         }
     }
 
-    private void reobfuscateMethodInstructions(ClassNode node) {
+    private void reobfuscateMethodInstructions(ClassNode node, RemappingContext context) {
         for (MethodNode method : node.methods) {
             for (AbstractInsnNode instruction : method.instructions) {
-                if (instruction instanceof MethodInsnNode) {
-                    // Reobfuscating invokes
+                if (instruction instanceof FrameNode) {
+                    // Reobfuscating types of kept frames
+                    FrameNode frame = (FrameNode) instruction;
+                    reobfuscateFrameTypes(frame.local, context);
+                    reobfuscateFrameTypes(frame.stack, context);
+                } else if (instruction instanceof MethodInsnNode) {
+                    // Reobfuscating invokes. Name is resolved by original owner and descriptor
                     MethodInsnNode methodInsn = (MethodInsnNode) instruction;
-                    ClassMapping ownerMapping = mappings.getByName(methodInsn.owner);
-                    if (ownerMapping != null) {
-                        methodInsn.owner = ownerMapping.getObfuscatedClass();
-                        String deobfuscatedMethodName = ownerMapping.getMethodByName(methodInsn.name, methodInsn.desc);
-                        if (deobfuscatedMethodName != null) {
-                            methodInsn.name = deobfuscatedMethodName;
-                        }
-                    }
+                    methodInsn.name = context.mapMethodName(methodInsn.owner, methodInsn.name, methodInsn.desc);
+                    methodInsn.owner = context.mapType(methodInsn.owner);
+                    methodInsn.desc = context.mapMethodDesc(methodInsn.desc);
                 } else if (instruction instanceof FieldInsnNode) {
                     // Reobfuscating fields
                     FieldInsnNode fieldInsn = (FieldInsnNode) instruction;
-                    ClassMapping ownerMapping = mappings.getByName(fieldInsn.owner);
-                    if (ownerMapping != null) {
-                        fieldInsn.owner = ownerMapping.getObfuscatedClass();
-                        String deobfuscatedFieldName = ownerMapping.getFieldByName(fieldInsn.name);
-                        if (deobfuscatedFieldName != null) {
-                            fieldInsn.name = deobfuscatedFieldName;
-                        }
+                    fieldInsn.name = context.mapFieldName(fieldInsn.owner, fieldInsn.name, fieldInsn.desc);
+                    fieldInsn.owner = context.map(fieldInsn.owner);
+                    fieldInsn.desc = context.mapDesc(fieldInsn.desc);
+                } else if (instruction instanceof TypeInsnNode) {
+                    // NEW, ANEWARRAY, CHECKCAST, INSTANCEOF
+                    TypeInsnNode typeInsn = (TypeInsnNode) instruction;
+                    typeInsn.desc = context.mapType(typeInsn.desc);
+                } else if (instruction instanceof LdcInsnNode) {
+                    // Class literals, method types, handles and dynamic constants
+                    LdcInsnNode ldc = (LdcInsnNode) instruction;
+                    ldc.cst = context.mapValue(ldc.cst);
+                } else if (instruction instanceof InvokeDynamicInsnNode) {
+                    // Lambdas and string concatenation: bootstrap handle and its arguments refer to members too
+                    InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode) instruction;
+                    indy.name = context.mapInvokeDynamicMethodName(indy.name, indy.desc, indy.bsm, indy.bsmArgs);
+                    indy.desc = context.mapMethodDesc(indy.desc);
+                    indy.bsm = (Handle) context.mapValue(indy.bsm);
+                    for (int i = 0; i < indy.bsmArgs.length; i++) {
+                        indy.bsmArgs[i] = context.mapValue(indy.bsmArgs[i]);
                     }
+                } else if (instruction instanceof MultiANewArrayInsnNode) {
+                    MultiANewArrayInsnNode multiANewArray = (MultiANewArrayInsnNode) instruction;
+                    multiANewArray.desc = context.mapDesc(multiANewArray.desc);
                 }
+
+                reobfuscateAnnotations(instruction.visibleTypeAnnotations, context);
+                reobfuscateAnnotations(instruction.invisibleTypeAnnotations, context);
             }
         }
     }
 
+    private void reobfuscateNames(@Nullable List<String> names, RemappingContext context) {
+        if (names == null) {
+            return;
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            names.set(i, context.map(names.get(i)));
+        }
+    }
+
+    /// Type annotations are AnnotationNode too, type path and reference are not changed
+    private void reobfuscateAnnotations(@Nullable List<? extends AnnotationNode> annotations, RemappingContext context) {
+        if (annotations == null) {
+            return;
+        }
+
+        for (AnnotationNode annotation : annotations) {
+            reobfuscateAnnotation(annotation, context);
+        }
+    }
+
+    private void reobfuscateParameterAnnotations(@Nullable List<AnnotationNode>[] annotations, RemappingContext context) {
+        if (annotations == null) {
+            return;
+        }
+
+        for (List<AnnotationNode> parameterAnnotations : annotations) {
+            reobfuscateAnnotations(parameterAnnotations, context);
+        }
+    }
+
+    private void reobfuscateAnnotation(AnnotationNode annotation, RemappingContext context) {
+        annotation.desc = context.mapDesc(annotation.desc);
+
+        // Values are pairs of name and value
+        if (annotation.values != null) {
+            for (int i = 1; i < annotation.values.size(); i += 2) {
+                annotation.values.set(i, reobfuscateAnnotationValue(annotation.values.get(i), context));
+            }
+        }
+    }
+
+    /// Value is primitive, String, Type, enum (String[] of descriptor and name), AnnotationNode or List of them
+    @SuppressWarnings("unchecked")
+    private Object reobfuscateAnnotationValue(Object value, RemappingContext context) {
+        if (value instanceof Type) {
+            return context.mapValue(value);
+        } else if (value instanceof String[]) {
+            String[] enumValue = (String[]) value;
+            return new String[]{context.mapDesc(enumValue[0]), enumValue[1]};
+        } else if (value instanceof AnnotationNode) {
+            reobfuscateAnnotation((AnnotationNode) value, context);
+        } else if (value instanceof List) {
+            List<Object> values = (List<Object>) value;
+            for (int i = 0; i < values.size(); i++) {
+                values.set(i, reobfuscateAnnotationValue(values.get(i), context));
+            }
+        }
+
+        return value;
+    }
+
+    /// Frame types are Integer (primitive, top, null...), LabelNode (uninitialized) or String (internal name or array)
+    private void reobfuscateFrameTypes(@Nullable List<Object> types, RemappingContext context) {
+        if (types == null) {
+            return;
+        }
+
+        for (int i = 0; i < types.size(); i++) {
+            Object type = types.get(i);
+            if (type instanceof String) {
+                types.set(i, context.mapType((String) type));
+            }
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Fast check whether class has anything to reobfuscate, made on constant pool only, without parsing of class.
+ * Every field and method reference names its owner by CONSTANT_Class entry, as do superclass and interfaces, so class
+ * whose Class entries are neither mapped classes nor subclasses of mapped classes has no mapped members to rename.
+ * If mapping renames classes, Utf8 entries (descriptors, signatures, annotations) are searched for mapped class names
+ * too. They are tested right on class bytes by Bloom filter of mapped names, strings are created only for probable
+ * matches. Lambdas have no Class entry of their functional interface, whose method names them, so InvokeDynamic entries
+ * are checked by return type of their descriptor. Thread-safe
+ */
+public class ConstantPoolScanner {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+
+    // FNV-1a over bytes of name, the same for String of mapping and for bytes of Utf8 entry
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // About 1% of false positives with 3 probes
+    private static final int BITS_PER_NAME = 10;
+    private static final int PROBES = 3;
+
+    private final Mapping mapping;
+    // Null if mapping renames no class, then descriptors never change and Utf8 entries are not searched
+    @Nullable
+    private final long[] filter;
+    private final int mask;
+
+    /**
+     * @param mapping Mapping. Is shared, must not be changed while scanning
+     */
+    public ConstantPoolScanner(Mapping mapping) {
+        this.mapping = mapping;
+
+        boolean renamesClasses = false;
+        for (Map.Entry<String, ClassMapping> entry : mapping.getClasses().entrySet()) {
+            if (!entry.getKey().equals(entry.getValue().getObfuscatedClass())) {
+                renamesClasses = true;
+                break;
+            }
+        }
+
+        if (!renamesClasses) {
+            filter = null;
+            mask = 0;
+            return;
+        }
+
+        int bits = Integer.highestOneBit(Math.max(mapping.getClasses().size() * BITS_PER_NAME, 64) - 1) << 1;
+        filter = new long[bits >>> 6];
+        mask = bits - 1;
+
+        for (String name : mapping.getClasses().keySet()) {
+            long hash = FNV_OFFSET;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+            }
+
+            for (int i = 0; i < PROBES; i++) {
+                int bit = probe(hash, i);
+                filter[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    public boolean referencesMapping(byte[] bytecode) {
+        return referencesMapping(new ClassReader(bytecode), null);
+    }
+
+    /**
+     * @param resolver Resolver of members through class hierarchy. Nullable. If null, only classes of mapping are
+     *                 looked for, like {@link ClassReobfuscator#EXACT_OWNERS} does
+     * @return true, if class references mapped class or class inheriting mapped class, so it may be changed by
+     * reobfuscation. If false, reobfuscation gives the same class
+     */
+    public boolean referencesMapping(ClassReader reader, @Nullable MemberResolver resolver) {
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // 0 is second slot of Long and Double entries
+            if (offset == 0) {
+                continue;
+            }
+
+            int tag = reader.readByte(offset - 1);
+            if (tag == CONSTANT_CLASS) {
+                if (isMapped(elementType(reader.readUTF8(offset, buffer)), resolver)) {
+                    return true;
+                }
+            } else if (tag == CONSTANT_INVOKE_DYNAMIC) {
+                // bootstrap_method_attr_index, name_and_type_index -> name_index, descriptor_index
+                String descriptor = reader.readUTF8(reader.getItem(reader.readUnsignedShort(offset + 2)) + 2, buffer);
+                Type returnType = Type.getReturnType(descriptor);
+                if (returnType.getSort() == Type.OBJECT && isMapped(returnType.getInternalName(), resolver)) {
+                    return true;
+                }
+            } else if (tag == CONSTANT_UTF8 && filter != null && containsMappedName(reader, offset)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isMapped(String name, @Nullable MemberResolver resolver) {
+        return resolver == null ? mapping.getByName(name) != null : resolver.inheritsMapping(name);
+    }
+
+    /// Every L starts possible class name, which ends before ';', '<' or '.', as in DescriptorTranslator
+    private boolean containsMappedName(ClassReader reader, int offset) {
+        int start = offset + 2;
+        int end = start + reader.readUnsignedShort(offset);
+
+        for (int position = start; position < end; position++) {
+            if (reader.readByte(position) != 'L') {
+                continue;
+            }
+
+            // Name is hashed while its end is searched
+            int nameStart = position + 1;
+            int nameEnd = nameStart;
+            long hash = FNV_OFFSET;
+            int b;
+            while (nameEnd < end && !isNameEnd(b = reader.readByte(nameEnd))) {
+                hash = (hash ^ b) * FNV_PRIME;
+                nameEnd++;
+            }
+
+            if (nameEnd == end || nameEnd == nameStart) {
+                continue;
+            }
+
+            if (mightContain(hash) && mapping.getByName(readName(reader, nameStart, nameEnd)) != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean mightContain(long hash) {
+        for (int i = 0; i < PROBES; i++) {
+            int bit = probe(hash, i);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /// Double hashing, probes are derived from both halves of one 64-bit hash
+    private int probe(long hash, int i) {
+        return ((int) hash + i * ((int) (hash >>> 32) | 1)) & mask;
+    }
+
+    private static boolean isNameEnd(int b) {
+        return b == ';' || b == '<' || b == '.';
+    }
+
+    /// Names are almost always ASCII, other names are decoded as UTF-8 (modified UTF-8 differs only for \0 and surrogates)
+    private static String readName(ClassReader reader, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) reader.readByte(start + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /// Class entries of arrays are descriptors, e.g. [Lnet/minecraft/entity/Entity;
+    private static String elementType(String name) {
+        if (name.charAt(0) != '[') {
+            return name;
+        }
+
+        int start = name.lastIndexOf('[') + 1;
+        return name.charAt(start) == 'L' ? name.substring(start + 1, name.length() - 1) : name;
+    }
+}
@@ -0,0 +1,23 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * ClassWriter which computes common superclasses with {@link ClassHierarchy} instead of loading classes
+ */
+public class HierarchyClassWriter extends ClassWriter {
+
+    private final ClassHierarchy hierarchy;
+
+    public HierarchyClassWriter(@Nullable ClassReader reader, int flags, ClassHierarchy hierarchy) {
+        super(reader, flags);
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    protected String getCommonSuperClass(String type1, String type2) {
+        return hierarchy.getCommonSuperClass(type1, type2);
+    }
+}
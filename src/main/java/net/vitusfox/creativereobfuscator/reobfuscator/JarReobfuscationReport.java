@@ -0,0 +1,126 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+public class JarReobfuscationReport {
+
+    private final int classes;
+    private final int resources;
+    private final long classBytes;
+    private final long totalBytes;
+    private final long elapsedNanos;
+    private final int cacheHits;
+    private final int cacheMisses;
+    private final int cacheWriteFailures;
+
+    public JarReobfuscationReport(int classes, int resources, long classBytes, long totalBytes, long elapsedNanos) {
+        this(classes, resources, classBytes, totalBytes, elapsedNanos, 0, 0);
+    }
+
+    public JarReobfuscationReport(int classes, int resources, long classBytes, long totalBytes, long elapsedNanos,
+                                  int cacheHits, int cacheMisses) {
+        this(classes, resources, classBytes, totalBytes, elapsedNanos, cacheHits, cacheMisses, 0);
+    }
+
+    public JarReobfuscationReport(int classes, int resources, long classBytes, long totalBytes, long elapsedNanos,
+                                  int cacheHits, int cacheMisses, int cacheWriteFailures) {
+        this.classes = classes;
+        this.resources = resources;
+        this.classBytes = classBytes;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.cacheWriteFailures = cacheWriteFailures;
+    }
+
+    /**
+     * @return Count of reobfuscated classes
+     */
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return Count of non-class entries copied without changes
+     */
+    public int getResources() {
+        return resources;
+    }
+
+    /**
+     * @return Uncompressed size of all input classes
+     */
+    public long getClassBytes() {
+        return classBytes;
+    }
+
+    /**
+     * @return Uncompressed size of all input entries (classes and resources)
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Wall time from first read entry to written output
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return Count of classes copied from {@link ReobfuscationCache}
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return Count of classes reobfuscated and stored to {@link ReobfuscationCache}. 0, if cache is not used
+     */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return Count of cache misses which could not be stored to {@link ReobfuscationCache}, e.g. disk is full.
+     * These classes are reobfuscated and written to output anyway
+     */
+    public int getCacheWriteFailures() {
+        return cacheWriteFailures;
+    }
+
+    public double getClassesPerSecond() {
+        return perSecond(classes);
+    }
+
+    /**
+     * @return Reobfuscated class bytes per second
+     */
+    public double getBytesPerSecond() {
+        return perSecond(classBytes);
+    }
+
+    private double perSecond(long value) {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+
+        return value * 1_000_000_000D / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        String report = String.format("%d classes, %d resources in %.1f ms (%.0f classes/s, %.2f MB/s)",
+                classes, resources, elapsedNanos / 1_000_000D, getClassesPerSecond(), getBytesPerSecond() / (1024 * 1024));
+
+        if (cacheHits + cacheMisses > 0) {
+            report += String.format(", cache %d hits / %d misses", cacheHits, cacheMisses);
+        }
+
+        if (cacheWriteFailures > 0) {
+            report += String.format(", %d cache entries not written", cacheWriteFailures);
+        }
+
+        return report;
+    }
+}
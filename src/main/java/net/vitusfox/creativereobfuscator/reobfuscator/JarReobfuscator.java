@@ -0,0 +1,331 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reobfuscates whole JAR (or any zip) files. Classes are reobfuscated in parallel, other entries are copied as is.
+ * Output is deterministic: entries are sorted by output name (manifest first) and have fixed timestamps, so whole JAR
+ * is kept in memory until it is written. Duplicate input entries and entries written to the same output name (e.g. class
+ * renamed to name of another entry) fail reobfuscation with {@link ZipException}
+ */
+public class JarReobfuscator {
+
+    public static final String CLASS_EXTENSION = ".class";
+    public static final String MANIFEST_DIRECTORY = "META-INF/";
+    public static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    // 1980-02-01 00:00:00, the same constant as reproducible Gradle archives. Earliest time without DOS date quirks
+    public static final long ENTRY_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).getTimeInMillis();
+
+    private static final Comparator<String> ENTRY_ORDER = Comparator
+            .comparingInt(JarReobfuscator::entryPriority)
+            .thenComparing(Comparator.naturalOrder());
+
+    private final ClassReobfuscator reobfuscator;
+    private final Executor executor;
+    @Nullable
+    private final ReobfuscationCache cache;
+    private final long maxSize;
+
+    /**
+     * Creates reobfuscator which uses common fork join pool
+     */
+    public JarReobfuscator(ClassReobfuscator reobfuscator) {
+        this(reobfuscator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param reobfuscator Class reobfuscator. It is shared by all threads, so mapping must not be changed while working
+     * @param executor Executor for class reobfuscation tasks
+     */
+    public JarReobfuscator(ClassReobfuscator reobfuscator, Executor executor) {
+        this(reobfuscator, executor, null);
+    }
+
+    /**
+     * @param reobfuscator Class reobfuscator. It is shared by all threads, so mapping must not be changed while working
+     * @param executor Executor for class reobfuscation tasks
+     * @param cache Cache of reobfuscated classes. Nullable. If not null, unchanged classes are copied from cache
+     */
+    public JarReobfuscator(ClassReobfuscator reobfuscator, Executor executor, @Nullable ReobfuscationCache cache) {
+        this(reobfuscator, executor, cache, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param reobfuscator Class reobfuscator. It is shared by all threads, so mapping must not be changed while working
+     * @param executor Executor for class reobfuscation tasks
+     * @param cache Cache of reobfuscated classes. Nullable. If not null, unchanged classes are copied from cache
+     * @param maxSize Maximum total uncompressed size of entries in bytes. Whole JAR is kept in memory, so larger JAR
+     *                (e.g. zip bomb) fails with {@link ZipException} as soon as limit is reached
+     */
+    public JarReobfuscator(ClassReobfuscator reobfuscator, Executor executor, @Nullable ReobfuscationCache cache, long maxSize) {
+        this.reobfuscator = reobfuscator;
+        this.executor = executor;
+        this.cache = cache;
+        this.maxSize = maxSize;
+    }
+
+    public JarReobfuscationReport reobfuscate(File input, File output) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(input));
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            return reobfuscate(in, out);
+        }
+    }
+
+    /**
+     * Reads zip from input and writes reobfuscated zip to output. Streams are not closed.
+     * Classes are submitted to executor while reading, so reading and reobfuscation are overlapped. If frames are
+     * computed, classes are submitted after reading, when hierarchy of all JAR classes is known
+     * @param input Zip input stream
+     * @param output Output for reobfuscated zip
+     * @return Statistics of this run
+     */
+    public JarReobfuscationReport reobfuscate(InputStream input, OutputStream output) throws IOException {
+        long start = System.nanoTime();
+
+        // Input name -> (output name, bytes), in order of input
+        LinkedHashMap<String, CompletableFuture<Pair<String, byte[]>>> entries = new LinkedHashMap<>();
+        int classes = 0;
+        int resources = 0;
+        long classBytes = 0;
+        long totalBytes = 0;
+
+        // Classes of this JAR, with default hierarchy of reobfuscator as parent
+        ClassHierarchy hierarchy = new ClassHierarchy(reobfuscator.getMapping(), reobfuscator.getHierarchy(), null);
+        // If reobfuscator asks hierarchy, classes are submitted after whole JAR is read
+        boolean deferred = reobfuscator.needsHierarchy();
+        List<Pair<String, byte[]>> deferredClasses = new ArrayList<>();
+        Set<String> deferredNames = new HashSet<>();
+        Run run = new Run(hierarchy, cache != null && !deferred ? reobfuscator.getFingerprint() : null);
+
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry = zip.getNextEntry();
+        while (entry != null) {
+            String name = entry.getName();
+            // Readers of zip differ in which of duplicates they take, so neither is taken
+            if (entries.containsKey(name) || deferredNames.contains(name)) {
+                throw new ZipException("Duplicate entry " + name);
+            }
+
+            if (entry.isDirectory()) {
+                entries.put(name, CompletableFuture.completedFuture(new Pair<>(name, null)));
+            } else {
+                byte[] bytes = readEntry(zip, name, maxSize - totalBytes);
+                totalBytes += bytes.length;
+
+                if (isClass(name, bytes)) {
+                    classes++;
+                    classBytes += bytes.length;
+                    if (deferred) {
+                        hierarchy.addClass(bytes);
+                        deferredClasses.add(new Pair<>(name, bytes));
+                        deferredNames.add(name);
+                    } else {
+                        entries.put(name, submit(name, bytes, run));
+                    }
+                } else {
+                    resources++;
+                    entries.put(name, CompletableFuture.completedFuture(new Pair<>(name, bytes)));
+                }
+            }
+
+            entry = zip.getNextEntry();
+        }
+
+        if (cache != null && deferred) {
+            // Output of class depends on headers of other classes, so they are part of cache key too
+            run.cacheContext = getCacheContext(deferredClasses);
+        }
+
+        for (Pair<String, byte[]> deferredClass : deferredClasses) {
+            entries.put(deferredClass.getFirst(), submit(deferredClass.getFirst(), deferredClass.getSecond(), run));
+        }
+
+        // Classes may be moved by mapping, so order is known when all of them are reobfuscated
+        TreeMap<String, Pair<String, byte[]>> outputEntries = new TreeMap<>(ENTRY_ORDER);
+        for (Map.Entry<String, CompletableFuture<Pair<String, byte[]>>> mapEntry : entries.entrySet()) {
+            Pair<String, byte[]> result = join(mapEntry.getKey(), mapEntry.getValue());
+            Pair<String, byte[]> previous = outputEntries.put(result.getFirst(), new Pair<>(mapEntry.getKey(), result.getSecond()));
+            if (previous != null) {
+                throw new ZipException("Entries " + previous.getFirst() + " and " + mapEntry.getKey()
+                        + " are both written as " + result.getFirst());
+            }
+        }
+
+        ZipOutputStream zipOutput = new ZipOutputStream(output);
+        for (Map.Entry<String, Pair<String, byte[]>> outputEntry : outputEntries.entrySet()) {
+            byte[] bytes = outputEntry.getValue().getSecond();
+
+            ZipEntry outEntry = new ZipEntry(outputEntry.getKey());
+            outEntry.setTime(ENTRY_TIME);
+            zipOutput.putNextEntry(outEntry);
+            if (bytes != null) {
+                zipOutput.write(bytes);
+            }
+            zipOutput.closeEntry();
+        }
+        zipOutput.finish();
+        output.flush();
+
+        return new JarReobfuscationReport(classes, resources, classBytes, totalBytes, System.nanoTime() - start,
+                run.cacheHits.get(), run.cacheMisses.get(), run.cacheWriteFailures.get());
+    }
+
+    private CompletableFuture<Pair<String, byte[]>> submit(String name, byte[] bytes, Run run) {
+        return CompletableFuture.supplyAsync(() -> reobfuscateEntry(name, bytes, run), executor);
+    }
+
+    private Pair<String, byte[]> reobfuscateEntry(String name, byte[] bytes, Run run) {
+        String className = new ClassReader(bytes).getClassName();
+
+        byte[] reobfuscated;
+        if (cache == null) {
+            reobfuscated = reobfuscator.reobfuscate(bytes, run.hierarchy);
+        } else {
+            String key = ReobfuscationCache.key(bytes, run.cacheContext);
+            reobfuscated = cache.get(key);
+
+            if (reobfuscated != null) {
+                run.cacheHits.incrementAndGet();
+            } else {
+                run.cacheMisses.incrementAndGet();
+                reobfuscated = reobfuscator.reobfuscate(bytes, run.hierarchy);
+
+                try {
+                    cache.put(key, reobfuscated);
+                } catch (IOException e) {
+                    // Cache is only a speedup, class is reobfuscated anyway. Failures are counted in report
+                    run.cacheWriteFailures.incrementAndGet();
+                }
+            }
+        }
+
+        return new Pair<>(getClassEntryName(name, className, reobfuscated), reobfuscated);
+    }
+
+    /// Reads entry, but not more than remaining bytes of limit
+    private byte[] readEntry(ZipInputStream zip, String name, long remaining) throws IOException {
+        if (maxSize == Long.MAX_VALUE) {
+            return Util.readFully(zip);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read = zip.read(buffer);
+        while (read != -1) {
+            if (out.size() + read > remaining) {
+                throw new ZipException("JAR is larger than " + maxSize + " bytes uncompressed, at entry " + name);
+            }
+
+            out.write(buffer, 0, read);
+            read = zip.read(buffer);
+        }
+
+        return out.toByteArray();
+    }
+
+    /// Fingerprint of reobfuscator, of its hierarchy (e.g. added libraries) and headers of all classes of JAR
+    private byte[] getCacheContext(List<Pair<String, byte[]>> classes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        digest.update(reobfuscator.getFingerprint());
+        digest.update(reobfuscator.getHierarchy().getFingerprint());
+
+        // Sorted by entry name, order of entries in zip does not matter
+        TreeMap<String, String> headers = new TreeMap<>();
+        for (Pair<String, byte[]> entry : classes) {
+            ClassReader reader = new ClassReader(entry.getSecond());
+            headers.put(entry.getFirst(), reader.getClassName() + ' ' + reader.getAccess() + ' ' + reader.getSuperName()
+                    + ' ' + String.join(" ", reader.getInterfaces()));
+        }
+
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            digest.update(header.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(header.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        return digest.digest();
+    }
+
+    /// Waits interruptibly, so thread of cancelled run stops waiting for classes which will never be reobfuscated
+    private Pair<String, byte[]> join(String name, CompletableFuture<Pair<String, byte[]>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not reobfuscate entry " + name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reobfuscating entry " + name);
+        }
+    }
+
+    private static boolean isClass(String name, byte[] bytes) {
+        // Checking magic, some JARs contain resources with .class extension
+        return name.endsWith(CLASS_EXTENSION) && bytes.length >= 4
+                && (bytes[0] & 0xFF) == 0xCA && (bytes[1] & 0xFF) == 0xFE
+                && (bytes[2] & 0xFF) == 0xBA && (bytes[3] & 0xFF) == 0xBE;
+    }
+
+    /// Moves entry to new path, if class name was changed by mapping. Prefix (e.g. META-INF/versions/9/) is kept
+    private static String getClassEntryName(String name, String className, byte[] reobfuscated) {
+        String newClassName = new ClassReader(reobfuscated).getClassName();
+        String classPath = className + CLASS_EXTENSION;
+
+        if (newClassName.equals(className) || !name.endsWith(classPath)) {
+            return name;
+        }
+
+        return name.substring(0, name.length() - classPath.length()) + newClassName + CLASS_EXTENSION;
+    }
+
+    /// State of one JAR
+    private static class Run {
+
+        private final ClassHierarchy hierarchy;
+        private final AtomicInteger cacheHits = new AtomicInteger();
+        private final AtomicInteger cacheMisses = new AtomicInteger();
+        private final AtomicInteger cacheWriteFailures = new AtomicInteger();
+        // Set before classes are submitted
+        private byte[] cacheContext;
+
+        private Run(ClassHierarchy hierarchy, @Nullable byte[] cacheContext) {
+            this.hierarchy = hierarchy;
+            this.cacheContext = cacheContext;
+        }
+    }
+
+    private static int entryPriority(String name) {
+        if (name.equals(MANIFEST_DIRECTORY)) {
+            return 0;
+        } else if (name.equals(MANIFEST)) {
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+}
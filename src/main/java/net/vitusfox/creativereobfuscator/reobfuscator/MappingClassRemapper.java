@@ -0,0 +1,35 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.MethodRemapper;
+
+/**
+ * ClassRemapper for streaming mode. ASM asks remapper for name of invokedynamic without bootstrap method, so names of
+ * lambdas are mapped here by {@link MappingRemapper#mapInvokeDynamicMethodName(String, String, Handle, Object[])}
+ */
+class MappingClassRemapper extends ClassRemapper {
+
+    private final MappingRemapper mappingRemapper;
+
+    MappingClassRemapper(ClassVisitor classVisitor, MappingRemapper remapper) {
+        super(classVisitor, remapper);
+        this.mappingRemapper = remapper;
+    }
+
+    @Override
+    protected MethodVisitor createMethodRemapper(MethodVisitor methodVisitor) {
+        return new MethodRemapper(api, methodVisitor, remapper) {
+            @Override
+            public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                               Object... bootstrapMethodArguments) {
+                // Remapper keeps given name, descriptor and arguments are remapped by super
+                super.visitInvokeDynamicInsn(mappingRemapper.mapInvokeDynamicMethodName(name, descriptor,
+                        bootstrapMethodHandle, bootstrapMethodArguments), descriptor, bootstrapMethodHandle,
+                        bootstrapMethodArguments);
+            }
+        };
+    }
+}
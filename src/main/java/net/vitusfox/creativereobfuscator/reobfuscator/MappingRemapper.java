@@ -0,0 +1,121 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.DescriptorTranslator;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * ASM remapper backed by {@link Mapping}. Members are looked up by their owner as written in bytecode
+ * (before renaming) and by original descriptor. Descriptors and signatures are translated by cached
+ * {@link DescriptorTranslator}. Stateless, can be shared between threads
+ */
+public class MappingRemapper extends Remapper {
+
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    private final Mapping mapping;
+    private final DescriptorTranslator translator;
+
+    public MappingRemapper(Mapping mapping) {
+        this(mapping, new DescriptorTranslator(mapping));
+    }
+
+    /**
+     * @param translator Translator renaming classes by the same mapping. Shared, so its cache is reused
+     */
+    public MappingRemapper(Mapping mapping, DescriptorTranslator translator) {
+        this.mapping = mapping;
+        this.translator = translator;
+    }
+
+    @Override
+    public String map(String internalName) {
+        ClassMapping classMapping = getClassMapping(internalName);
+        if (classMapping == null) {
+            return internalName;
+        }
+
+        return classMapping.getObfuscatedClass();
+    }
+
+    @Override
+    public String mapType(String internalName) {
+        if (internalName == null || internalName.charAt(0) != '[') {
+            return internalName == null ? null : map(internalName);
+        }
+
+        return translator.translate(internalName);
+    }
+
+    @Override
+    public String mapDesc(String descriptor) {
+        return translator.translate(descriptor);
+    }
+
+    @Override
+    public String mapMethodDesc(String methodDescriptor) {
+        return translator.translate(methodDescriptor);
+    }
+
+    @Override
+    public String mapSignature(String signature, boolean typeSignature) {
+        return translator.translate(signature);
+    }
+
+    @Override
+    public String mapMethodName(String owner, String name, String descriptor) {
+        ClassMapping classMapping = getClassMapping(owner);
+        if (classMapping == null) {
+            return name;
+        }
+
+        String obfuscated = classMapping.getMethodByName(name, descriptor);
+        return obfuscated == null ? name : obfuscated;
+    }
+
+    @Override
+    public String mapFieldName(String owner, String name, String descriptor) {
+        ClassMapping classMapping = getClassMapping(owner);
+        if (classMapping == null) {
+            return name;
+        }
+
+        String obfuscated = classMapping.getFieldByName(name);
+        return obfuscated == null ? name : obfuscated;
+    }
+
+    /**
+     * Name of invokedynamic is not a member reference, except for lambdas and method references: for
+     * LambdaMetafactory it is name of implemented method of functional interface, returned by descriptor. Such name is
+     * renamed like the method, otherwise instance would not implement renamed interface method (AbstractMethodError)
+     * @param descriptor Original descriptor of invokedynamic
+     * @param bootstrap Original bootstrap method
+     * @param arguments Original bootstrap arguments, first is erased method type of implemented method
+     * @return Mapped name, or the same name for other bootstrap methods
+     */
+    public String mapInvokeDynamicMethodName(String name, String descriptor, Handle bootstrap, Object[] arguments) {
+        if (!bootstrap.getOwner().equals(LAMBDA_METAFACTORY) || arguments.length == 0 || !(arguments[0] instanceof Type)) {
+            return name;
+        }
+
+        Type functionalInterface = Type.getReturnType(descriptor);
+        if (functionalInterface.getSort() != Type.OBJECT) {
+            return name;
+        }
+
+        // metafactory and altMetafactory, the same first argument
+        return mapMethodName(functionalInterface.getInternalName(), name, ((Type) arguments[0]).getDescriptor());
+    }
+
+    /**
+     * @return Mapping of class. Nullable. If null, class is not mapped
+     */
+    @Nullable
+    protected ClassMapping getClassMapping(String internalName) {
+        return mapping.getByName(internalName);
+    }
+}
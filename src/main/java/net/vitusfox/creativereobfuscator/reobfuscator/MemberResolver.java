@@ -0,0 +1,242 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.LruCache;
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Resolves mapped names of members through class hierarchy, so members inherited or overridden by unmapped classes
+ * (e.g. mod class extending Minecraft class) are remapped too. If owner has no mapping of member, its superclasses
+ * and interfaces are searched, like JVM resolves members. Results, misses included, are kept in bounded LRU cache for
+ * every asked owner, so members repeated across classes are resolved once. Cache is dropped when
+ * {@link ClassHierarchy#getGeneration() hierarchy changes}. Thread-safe
+ */
+public class MemberResolver {
+
+    // Hierarchy depth limit, guards against cyclic hierarchy of broken classes
+    private static final int MAX_DEPTH = 256;
+    // Compared by identity, never returned
+    private static final String MISSING = new String("<missing>");
+    private static final int RESOLVED_CACHE_SIZE = 1 << 16;
+    private static final int INHERITING_CACHE_SIZE = 1 << 14;
+
+    private final Mapping mapping;
+    private final ClassHierarchy hierarchy;
+    private final LruCache<Key, String> resolved = new LruCache<>(RESOLVED_CACHE_SIZE);
+    private final LruCache<String, Boolean> inheriting = new LruCache<>(INHERITING_CACHE_SIZE);
+    private final LruCache<String, Boolean> extendingUnmapped = new LruCache<>(INHERITING_CACHE_SIZE);
+    private volatile long generation;
+
+    public MemberResolver(Mapping mapping, ClassHierarchy hierarchy) {
+        this.mapping = mapping;
+        this.hierarchy = hierarchy;
+        this.generation = hierarchy.getGeneration();
+    }
+
+    public Mapping getMapping() {
+        return mapping;
+    }
+
+    /**
+     * @param owner Owner of field as written in bytecode
+     * @param name Field name
+     * @return Mapped field name. Nullable. If null, neither owner nor its supertypes map this field
+     */
+    @Nullable
+    public String resolveField(String owner, String name) {
+        validate();
+        return resolve(owner, name, null, 0);
+    }
+
+    /**
+     * @param owner Owner of method as written in bytecode
+     * @param name Method name
+     * @param descriptor Method descriptor
+     * @return Mapped method name. Nullable. If null, neither owner nor its supertypes map this method
+     */
+    @Nullable
+    public String resolveMethod(String owner, String name, String descriptor) {
+        validate();
+        return resolve(owner, name, descriptor, 0);
+    }
+
+    /**
+     * @param owner Class name as written in bytecode
+     * @return true, if owner or any of its supertypes is mapped, so members referenced through owner may be renamed
+     */
+    public boolean inheritsMapping(String owner) {
+        validate();
+        return inheritsMapping(owner, 0);
+    }
+
+    /**
+     * @param owner Class name as written in bytecode
+     * @return true, if any supertype of owner except java/lang/Object is not mapped, so member missing in mapping
+     * may be declared there (e.g. size() of mapped class extending AbstractList)
+     */
+    public boolean extendsUnmapped(String owner) {
+        validate();
+        return extendsUnmapped(owner, 0);
+    }
+
+    private boolean extendsUnmapped(String owner, int depth) {
+        Boolean result = extendingUnmapped.get(owner);
+        if (result == null) {
+            result = depth < MAX_DEPTH && findUnmappedSupertype(owner, depth);
+            extendingUnmapped.putIfAbsent(owner, result);
+        }
+
+        return result;
+    }
+
+    private boolean findUnmappedSupertype(String owner, int depth) {
+        String superName = hierarchy.getSuperName(owner);
+        if (superName != null && isUnmappedSupertype(superName, depth)) {
+            return true;
+        }
+
+        for (String interfaceName : hierarchy.getInterfaces(owner)) {
+            if (isUnmappedSupertype(interfaceName, depth)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isUnmappedSupertype(String name, int depth) {
+        if (name.equals(ClassHierarchy.OBJECT)) {
+            return false;
+        }
+
+        return mapping.getByName(name) == null || extendsUnmapped(name, depth + 1);
+    }
+
+    /// Drops cached results computed from older hierarchy
+    private void validate() {
+        long current = hierarchy.getGeneration();
+        if (current != generation) {
+            synchronized (this) {
+                if (current != generation) {
+                    resolved.clear();
+                    inheriting.clear();
+                    extendingUnmapped.clear();
+                    generation = current;
+                }
+            }
+        }
+    }
+
+    private boolean inheritsMapping(String owner, int depth) {
+        if (mapping.getByName(owner) != null) {
+            return true;
+        }
+
+        Boolean result = inheriting.get(owner);
+        if (result == null) {
+            result = depth < MAX_DEPTH && findMappedSupertype(owner, depth);
+            inheriting.putIfAbsent(owner, result);
+        }
+
+        return result;
+    }
+
+    private boolean findMappedSupertype(String owner, int depth) {
+        String superName = hierarchy.getSuperName(owner);
+        if (superName != null && inheritsMapping(superName, depth + 1)) {
+            return true;
+        }
+
+        for (String interfaceName : hierarchy.getInterfaces(owner)) {
+            if (inheritsMapping(interfaceName, depth + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /// Descriptor is null for fields
+    @Nullable
+    private String resolve(String owner, String name, @Nullable String descriptor, int depth) {
+        Key key = new Key(owner, name, descriptor);
+        String result = resolved.get(key);
+        if (result == null) {
+            // Not computed under lock of cache: resolution is recursive and would update the same cache
+            result = depth < MAX_DEPTH ? find(owner, name, descriptor, depth) : null;
+            resolved.putIfAbsent(key, result == null ? MISSING : result);
+        }
+
+        return result == MISSING ? null : result;
+    }
+
+    @Nullable
+    private String find(String owner, String name, @Nullable String descriptor, int depth) {
+        ClassMapping classMapping = mapping.getByName(owner);
+        if (classMapping != null) {
+            String mapped = descriptor == null ? classMapping.getFieldByName(name) : classMapping.getMethodByName(name, descriptor);
+            if (mapped != null) {
+                return mapped;
+            }
+        }
+
+        String superName = hierarchy.getSuperName(owner);
+        // Fields are searched in interfaces before superclass, methods in superclass before interfaces
+        if (descriptor != null && superName != null) {
+            String mapped = resolve(superName, name, descriptor, depth + 1);
+            if (mapped != null) {
+                return mapped;
+            }
+        }
+
+        for (String interfaceName : hierarchy.getInterfaces(owner)) {
+            String mapped = resolve(interfaceName, name, descriptor, depth + 1);
+            if (mapped != null) {
+                return mapped;
+            }
+        }
+
+        if (descriptor == null && superName != null) {
+            return resolve(superName, name, null, depth + 1);
+        }
+
+        return null;
+    }
+
+    private static final class Key {
+
+        private final String owner;
+        private final String name;
+        @Nullable
+        private final String descriptor;
+        private final int hash;
+
+        private Key(String owner, String name, @Nullable String descriptor) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.hash = (owner.hashCode() * 31 + name.hashCode()) * 31 + (descriptor == null ? 0 : descriptor.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return hash == key.hash && owner.equals(key.owner) && name.equals(key.name)
+                    && (descriptor == null ? key.descriptor == null : descriptor.equals(key.descriptor));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
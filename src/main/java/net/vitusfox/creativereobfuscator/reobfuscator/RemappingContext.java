@@ -0,0 +1,167 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.ClassMapping;
+import net.vitusfox.creativereobfuscator.mapping.DescriptorTranslator;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Remapping state of one reobfuscated class. Mapping of the class itself is resolved once by its original name,
+ * mappings of other owners are resolved once per class and cached. Members are resolved through class hierarchy
+ * if resolver is given. Lookups are counted for {@link ClassReobfuscationReport}. Not thread-safe, created for every class
+ */
+class RemappingContext extends MappingRemapper {
+
+    private static final ClassMapping MISSING = ClassMapping.builder("", "").build();
+    // Methods every class inherits from Object, name + descriptor. Never in mapping of class, unless overridden
+    private static final Set<String> OBJECT_METHODS = new HashSet<>(Arrays.asList(
+            "equals(Ljava/lang/Object;)Z", "hashCode()I", "toString()Ljava/lang/String;", "getClass()Ljava/lang/Class;",
+            "clone()Ljava/lang/Object;", "finalize()V", "notify()V", "notifyAll()V", "wait()V", "wait(J)V", "wait(JI)V"));
+
+    // ClassReader returns the same String instance for every use of one constant, so owners are cached by identity
+    // and never hashed. Equal owner from another instance is just resolved once more
+    private final IdentityHashMap<String, ClassMapping> owners = new IdentityHashMap<>();
+    private final String className;
+    @Nullable
+    private final ClassMapping self;
+    @Nullable
+    private final MemberResolver resolver;
+    // Null if misses are not recorded
+    @Nullable
+    private final Set<String> missingMembers;
+    @Nullable
+    private final MemberResolver supertypes;
+
+    // Statistics for ReobfuscatorHandler. Plain counters, context is used by one thread
+    private int memberLookups;
+    private int remappedMembers;
+    private int ownerMisses;
+
+    /**
+     * @param className Original name of class, before renaming
+     * @param resolver Resolver of inherited members. Nullable, if null members are looked up in exact owner only
+     * @param supertypes Resolver asked for unmapped supertypes of owners of missing members. Nullable. If not null,
+     *                   missing members of mapped classes are collected, see {@link #getMissingMembers()}
+     */
+    RemappingContext(Mapping mapping, DescriptorTranslator translator, String className, @Nullable MemberResolver resolver,
+                     @Nullable MemberResolver supertypes) {
+        super(mapping, translator);
+        this.className = className;
+        this.resolver = resolver;
+        this.supertypes = supertypes;
+        this.missingMembers = supertypes != null ? new LinkedHashSet<>() : null;
+        this.self = getClassMapping(className);
+    }
+
+    /**
+     * @return Original name of class, before renaming
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return Mapping of reobfuscated class. Nullable. If null, class is not mapped
+     */
+    @Nullable
+    ClassMapping getSelf() {
+        return self;
+    }
+
+    @Override
+    public String mapMethodName(String owner, String name, String descriptor) {
+        String mapped;
+        if (resolver != null) {
+            mapped = resolver.resolveMethod(owner, name, descriptor);
+        } else {
+            ClassMapping classMapping = getClassMapping(owner);
+            mapped = classMapping == null ? null : classMapping.getMethodByName(name, descriptor);
+        }
+
+        return count(owner, name, descriptor, mapped);
+    }
+
+    @Override
+    public String mapFieldName(String owner, String name, String descriptor) {
+        String mapped;
+        if (resolver != null) {
+            mapped = resolver.resolveField(owner, name);
+        } else {
+            ClassMapping classMapping = getClassMapping(owner);
+            mapped = classMapping == null ? null : classMapping.getFieldByName(name);
+        }
+
+        return count(owner, name, descriptor, mapped);
+    }
+
+    int getMemberLookups() {
+        return memberLookups;
+    }
+
+    int getRemappedMembers() {
+        return remappedMembers;
+    }
+
+    int getOwnerMisses() {
+        return ownerMisses;
+    }
+
+    /**
+     * @return Members of mapped classes, which are not in mapping. Members of Object and members of classes with
+     * unmapped supertypes (which may declare them) are not counted. Empty, if misses are not recorded
+     */
+    List<String> getMissingMembers() {
+        return missingMembers == null ? Collections.emptyList() : new ArrayList<>(missingMembers);
+    }
+
+    private String count(String owner, String name, String descriptor, @Nullable String mapped) {
+        memberLookups++;
+
+        if (mapped == null) {
+            if (missingMembers != null && isMissing(owner, name, descriptor)) {
+                missingMembers.add(owner + '.' + name + ' ' + descriptor);
+            }
+
+            return name;
+        }
+
+        if (!mapped.equals(name)) {
+            remappedMembers++;
+        }
+
+        return mapped;
+    }
+
+    /// Unmapped member is missing only if no class outside mapping may declare it
+    private boolean isMissing(String owner, String name, String descriptor) {
+        // Constructors and static initializers are never mapped
+        if (name.charAt(0) == '<' || getClassMapping(owner) == null) {
+            return false;
+        }
+
+        if (descriptor.charAt(0) == '(' && OBJECT_METHODS.contains(name + descriptor)) {
+            return false;
+        }
+
+        return supertypes == null || !supertypes.extendsUnmapped(owner);
+    }
+
+    @Nullable
+    @Override
+    protected ClassMapping getClassMapping(String internalName) {
+        ClassMapping classMapping = owners.get(internalName);
+        if (classMapping == null) {
+            classMapping = super.getClassMapping(internalName);
+            owners.put(internalName, classMapping == null ? MISSING : classMapping);
+            if (classMapping == null) {
+                ownerMisses++;
+            }
+
+            return classMapping;
+        }
+
+        return classMapping == MISSING ? null : classMapping;
+    }
+}
@@ -0,0 +1,229 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.Util;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of reobfuscated classes, so unchanged classes of JARs processed again are copied from cache without
+ * reobfuscation. Entry key is SHA-256 of class bytes and of context (mapping fingerprint, reobfuscator flags,
+ * hierarchy), see {@link #key(byte[], byte[])}. Entries are files in directory, their modification time is last
+ * access time. When cache is bigger than its limit, least recently used entries are deleted. Thread-safe,
+ * directory may be shared by several processes
+ */
+public class ReobfuscationCache {
+
+    /**
+     * Version of reobfuscator output. Part of every key, must be increased when the same input gives another output
+     */
+    public static final int VERSION = 2;
+    public static final long DEFAULT_MAX_SIZE = 256L << 20; // 256 MB
+    public static final String EXTENSION = ".class";
+
+    // After eviction cache is trimmed below the limit, so every new entry does not trigger eviction again
+    private static final double TRIM_RATIO = 0.9;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param directory Cache directory. Created if not exists
+     * @param maxSize Maximum total size of entries in bytes
+     */
+    public ReobfuscationCache(File directory, long maxSize) throws IOException {
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+
+        Files.createDirectories(this.directory);
+        for (Path entry : listEntries()) {
+            size.addAndGet(Files.size(entry));
+        }
+    }
+
+    public ReobfuscationCache(File directory) throws IOException {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param bytecode Input class
+     * @param context Everything else output depends on, e.g. {@link ClassReobfuscator#getFingerprint()}
+     * @return Key of entry, hex string
+     */
+    public static String key(byte[] bytecode, byte[] context) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        digest.update((byte) VERSION);
+        digest.update(context);
+        digest.update(bytecode);
+
+        StringBuilder key = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * @return Cached class. Nullable. If null, entry is not in cache
+     */
+    @Nullable
+    public byte[] get(String key) {
+        Path entry = getEntry(key);
+        try {
+            byte[] bytes = Files.readAllBytes(entry);
+            if (!isClass(bytes)) {
+                // Broken entry, e.g. disk was full while writing by old process
+                Files.deleteIfExists(entry);
+                misses.increment();
+                return null;
+            }
+
+            // Access time is kept in modification time, access time of file system is often disabled
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.increment();
+            return bytes;
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        } catch (IOException e) {
+            misses.increment(); // Unreadable entry is a miss, it will be rewritten
+            return null;
+        }
+    }
+
+    /**
+     * Stores class. Entry is written to temporary file and moved, so readers never see incomplete entry
+     */
+    public void put(String key, byte[] bytecode) throws IOException {
+        Path entry = getEntry(key);
+        Files.createDirectories(entry.getParent());
+
+        // Temporary files end with .tmp, not with EXTENSION, so they are not listed as entries
+        long old = Files.exists(entry) ? Files.size(entry) : 0;
+        Util.writeAtomically(entry, channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(bytecode);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+        size.addAndGet(bytecode.length - old);
+
+        if (size.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes least recently used entries until cache is smaller than its limit
+     */
+    public synchronized void evict() throws IOException {
+        if (size.get() <= maxSize) {
+            return;
+        }
+
+        List<Path> entries = listEntries();
+        long[] sizes = new long[entries.size()];
+        long[] times = new long[entries.size()];
+        Integer[] order = new Integer[entries.size()];
+
+        // Size is recounted from disk, entries of other processes are counted too
+        long total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            order[i] = i;
+            try {
+                sizes[i] = Files.size(entries.get(i));
+                times[i] = Files.getLastModifiedTime(entries.get(i)).toMillis();
+            } catch (NoSuchFileException e) {
+                times[i] = Long.MAX_VALUE; // Deleted by another process
+                continue;
+            }
+
+            total += sizes[i];
+        }
+        size.set(total);
+
+        Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+
+        long target = (long) (maxSize * TRIM_RATIO);
+        for (int i : order) {
+            if (size.get() <= target) {
+                break;
+            }
+
+            if (Files.deleteIfExists(entries.get(i))) {
+                size.addAndGet(-sizes[i]);
+                evictions.increment();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Count of entries deleted by eviction
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Total size of entries in bytes. Entries written by other processes are counted after next eviction
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /// Entries are spread over 256 subdirectories by first byte of key, so directories stay small
+    private Path getEntry(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + EXTENSION);
+    }
+
+    private List<Path> listEntries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            files.filter(path -> path.getFileName().toString().endsWith(EXTENSION) && Files.isRegularFile(path))
+                    .forEach(entries::add);
+        }
+
+        return entries;
+    }
+
+    private static boolean isClass(byte[] bytes) {
+        return bytes.length >= 4 && (bytes[0] & 0xFF) == 0xCA && (bytes[1] & 0xFF) == 0xFE
+                && (bytes[2] & 0xFF) == 0xBA && (bytes[3] & 0xFF) == 0xBE;
+    }
+}
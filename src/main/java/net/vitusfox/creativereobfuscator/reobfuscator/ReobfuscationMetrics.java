@@ -0,0 +1,141 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of reobfuscation metrics, filled as {@link ReobfuscatorHandler}: counters, latency histograms per
+ * {@link ReobfuscationPhase} and counts of missing members of all classes. Counters are LongAdders, so reobfuscating
+ * threads do not contend. Thread-safe
+ */
+public class ReobfuscationMetrics implements ReobfuscatorHandler {
+
+    /// Limit of distinct missing members, so metrics of long-running process do not grow without bound
+    public static final int MAX_MISSING_MEMBERS = 10_000;
+
+    private final LongAdder classes = new LongAdder();
+    private final LongAdder skippedClasses = new LongAdder();
+    private final LongAdder memberLookups = new LongAdder();
+    private final LongAdder remappedMembers = new LongAdder();
+    private final LongAdder ownerMisses = new LongAdder();
+    private final LongAdder memberMisses = new LongAdder();
+    private final LatencyHistogram[] phases = new LatencyHistogram[ReobfuscationPhase.values().length];
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final ConcurrentHashMap<String, LongAdder> missingMembers = new ConcurrentHashMap<>();
+
+    public ReobfuscationMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void onClassReobfuscated(ClassReobfuscationReport report) {
+        classes.increment();
+        memberLookups.add(report.getMemberLookups());
+        remappedMembers.add(report.getRemappedMembers());
+        ownerMisses.add(report.getOwnerMisses());
+        memberMisses.add(report.getMissingMembers().size());
+
+        for (ReobfuscationPhase phase : ReobfuscationPhase.values()) {
+            phases[phase.ordinal()].record(report.getNanos(phase));
+        }
+        total.record(report.getTotalNanos());
+
+        for (String member : report.getMissingMembers()) {
+            LongAdder count = missingMembers.get(member);
+            if (count == null) {
+                if (missingMembers.size() >= MAX_MISSING_MEMBERS) {
+                    continue;
+                }
+
+                count = missingMembers.computeIfAbsent(member, key -> new LongAdder());
+            }
+
+            count.increment();
+        }
+    }
+
+    @Override
+    public void onClassSkipped(String className) {
+        skippedClasses.increment();
+    }
+
+    public long getClasses() {
+        return classes.sum();
+    }
+
+    /**
+     * @return Count of classes returned as is, because they reference nothing mapped
+     */
+    public long getSkippedClasses() {
+        return skippedClasses.sum();
+    }
+
+    public long getMemberLookups() {
+        return memberLookups.sum();
+    }
+
+    public long getRemappedMembers() {
+        return remappedMembers.sum();
+    }
+
+    /**
+     * @return Sum of unmapped owners of all classes, see {@link ClassReobfuscationReport#getOwnerMisses()}
+     */
+    public long getOwnerMisses() {
+        return ownerMisses.sum();
+    }
+
+    /**
+     * @return Count of references to missing members of mapped classes
+     */
+    public long getMemberMisses() {
+        return memberMisses.sum();
+    }
+
+    public LatencyHistogram getHistogram(ReobfuscationPhase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * @return Histogram of whole class reobfuscation
+     */
+    public LatencyHistogram getTotalHistogram() {
+        return total;
+    }
+
+    /**
+     * @return Missing members (owner.name descriptor) -> count of classes referencing them, most frequent first.
+     * At most {@link #MAX_MISSING_MEMBERS} distinct members are tracked
+     */
+    public Map<String, Long> getMissingMembers() {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(missingMembers.entrySet());
+        entries.sort((first, second) -> Long.compare(second.getValue().sum(), first.getValue().sum()));
+
+        LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : entries) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(
+                "%d classes (%d skipped), %d/%d members remapped, %d unmapped owners, %d missing member references",
+                getClasses(), getSkippedClasses(), getRemappedMembers(), getMemberLookups(), getOwnerMisses(), getMemberMisses()));
+
+        for (ReobfuscationPhase phase : ReobfuscationPhase.values()) {
+            builder.append('\n').append(phase).append(": ").append(getHistogram(phase));
+        }
+        builder.append("\nTOTAL: ").append(total);
+
+        return builder.toString();
+    }
+}
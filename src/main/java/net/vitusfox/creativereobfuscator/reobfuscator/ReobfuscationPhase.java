@@ -0,0 +1,14 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+/**
+ * Phases of class reobfuscation, timed for {@link ReobfuscatorHandler}
+ */
+public enum ReobfuscationPhase {
+
+    /// Reading class into ClassNode. Not used by streaming mode, it reads, remaps and writes in one pass (TRANSFORM)
+    PARSE,
+    /// Remapping names and types. In streaming mode also reading and writing, frames are computed here too
+    TRANSFORM,
+    /// Writing class, with frame computation in tree mode. In streaming mode only building of output bytes
+    WRITE
+}
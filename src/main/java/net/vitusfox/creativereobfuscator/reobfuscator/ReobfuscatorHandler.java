@@ -1,4 +1,21 @@
 package net.vitusfox.creativereobfuscator.reobfuscator;
 
+/**
+ * Listener of {@link ClassReobfuscator}, e.g. {@link ReobfuscationMetrics}. Methods are called from reobfuscating
+ * threads, so implementations must be thread-safe and fast. Default methods do nothing.
+ * If reobfuscator has no handler, no timings and reports are collected at all
+ */
 public interface ReobfuscatorHandler {
+
+    /**
+     * Called once for every reobfuscated class, after output is written
+     */
+    default void onClassReobfuscated(ClassReobfuscationReport report) {
+    }
+
+    /**
+     * Called instead of {@link #onClassReobfuscated} for class returned as is, because it references nothing mapped
+     */
+    default void onClassSkipped(String className) {
+    }
 }
@@ -0,0 +1,506 @@
+package net.vitusfox.creativereobfuscator.service;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassHierarchy;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassReobfuscator;
+import net.vitusfox.creativereobfuscator.reobfuscator.JarReobfuscationReport;
+import net.vitusfox.creativereobfuscator.reobfuscator.JarReobfuscator;
+import net.vitusfox.creativereobfuscator.reobfuscator.ReobfuscationCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived reobfuscation of many JARs and class batches from many callers, e.g. of build farm.
+ * Mappings are loaded once and shared by all requests. Classes are reobfuscated by at most {@code parallelism}
+ * workers, which take classes of active requests in turn (round-robin), so one huge JAR does not starve others.
+ * Backpressure: submit blocks while {@code maxRequests} requests are active, and reading of request blocks while
+ * {@code maxQueuedClasses} classes wait for workers. JAR request keeps its whole JAR in memory until output is written
+ * (see {@link JarReobfuscator}), so JARs larger than {@code maxJarSize} uncompressed bytes fail as soon as limit is
+ * read, and memory of JAR requests is bounded by about maxRequests * maxJarSize * 2 (input and reobfuscated classes).
+ * Class batches are held by caller. Every request has its own future, cancelling it drops its queued classes and stops
+ * its reading. Thread-safe
+ */
+public class ReobfuscationService implements Closeable {
+
+    public static final String DEFAULT_MAPPING = "default";
+    public static final int DEFAULT_MAX_REQUESTS = 16;
+    public static final int DEFAULT_MAX_QUEUED_CLASSES = 4096;
+    public static final long DEFAULT_MAX_JAR_SIZE = 256L << 20; // 256 MB
+
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private final Map<String, ClassReobfuscator> reobfuscators;
+    private final Executor executor;
+    private final boolean ownExecutor;
+    private final int parallelism;
+    private final long maxJarSize;
+    @Nullable
+    private final ReobfuscationCache cache;
+    private final Semaphore requests;
+    // Fair, so reading threads of small requests are not overtaken by reading thread of huge one
+    private final Semaphore queued;
+    // Requests with queued classes, worker takes one class of head request and moves request to tail
+    private final ArrayDeque<Request<?>> ready = new ArrayDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private int workers;
+    private volatile boolean closed;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param reobfuscators Mapping name -> reobfuscator. Mappings are shared, must not be changed, e.g. {@link Mapping#freeze()}
+     * @param executor Executor of workers and of request reading. Reading threads wait for workers, so executor must
+     *                 not be bounded below parallelism + maxRequests threads, e.g. cached thread pool
+     * @param parallelism Maximum count of classes reobfuscated at the same time
+     * @param maxRequests Maximum count of active requests, next submits wait
+     * @param maxQueuedClasses Maximum count of classes waiting for workers, reading of requests waits
+     * @param cache Cache of reobfuscated classes of JARs. Nullable
+     */
+    public ReobfuscationService(Map<String, ClassReobfuscator> reobfuscators, Executor executor, int parallelism,
+                                int maxRequests, int maxQueuedClasses, @Nullable ReobfuscationCache cache) {
+        this(reobfuscators, executor, false, parallelism, maxRequests, maxQueuedClasses, DEFAULT_MAX_JAR_SIZE, cache);
+    }
+
+    /**
+     * @param maxJarSize Maximum total uncompressed size of entries of one JAR in bytes, larger JAR requests fail
+     * @see #ReobfuscationService(Map, Executor, int, int, int, ReobfuscationCache)
+     */
+    public ReobfuscationService(Map<String, ClassReobfuscator> reobfuscators, Executor executor, int parallelism,
+                                int maxRequests, int maxQueuedClasses, long maxJarSize, @Nullable ReobfuscationCache cache) {
+        this(reobfuscators, executor, false, parallelism, maxRequests, maxQueuedClasses, maxJarSize, cache);
+    }
+
+    private ReobfuscationService(Map<String, ClassReobfuscator> reobfuscators, Executor executor, boolean ownExecutor,
+                                 int parallelism, int maxRequests, int maxQueuedClasses, long maxJarSize,
+                                 @Nullable ReobfuscationCache cache) {
+        if (reobfuscators.isEmpty()) {
+            throw new IllegalStateException("No mappings");
+        }
+
+        this.reobfuscators = Collections.unmodifiableMap(new LinkedHashMap<>(reobfuscators));
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.parallelism = Math.max(parallelism, 1);
+        this.maxJarSize = maxJarSize;
+        this.cache = cache;
+        this.requests = new Semaphore(Math.max(maxRequests, 1), true);
+        this.queued = new Semaphore(Math.max(maxQueuedClasses, 1), true);
+    }
+
+    /**
+     * @return Names of loaded mappings
+     */
+    public Set<String> getMappings() {
+        return reobfuscators.keySet();
+    }
+
+    /**
+     * @return Reobfuscator of mapping. Nullable. If null, there is no such mapping
+     */
+    @Nullable
+    public ClassReobfuscator getReobfuscator(String mapping) {
+        return reobfuscators.get(mapping);
+    }
+
+    public CompletableFuture<List<byte[]>> submitClasses(List<byte[]> classes) throws InterruptedException {
+        return submitClasses(DEFAULT_MAPPING, classes);
+    }
+
+    /**
+     * Reobfuscates batch of classes, e.g. classes of one source set. Classes of batch see each other in hierarchy.
+     * Waits while service has maxRequests active requests
+     * @param mapping Name of mapping
+     * @param classes Classes to reobfuscate. Arrays must not be changed until future is done
+     * @return Future of reobfuscated classes in order of input
+     */
+    public CompletableFuture<List<byte[]>> submitClasses(String mapping, List<byte[]> classes) throws InterruptedException {
+        ClassReobfuscator reobfuscator = getRequiredReobfuscator(mapping);
+
+        return submit(request -> {
+            // Classes of batch, with default hierarchy of reobfuscator as parent
+            ClassHierarchy hierarchy = new ClassHierarchy(reobfuscator.getMapping(), reobfuscator.getHierarchy(), null);
+            if (reobfuscator.needsHierarchy()) {
+                for (byte[] bytecode : classes) {
+                    hierarchy.addClass(bytecode);
+                }
+            }
+
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>(classes.size());
+            for (byte[] bytecode : classes) {
+                futures.add(CompletableFuture.supplyAsync(() -> reobfuscator.reobfuscate(bytecode, hierarchy), request));
+            }
+
+            List<byte[]> reobfuscated = new ArrayList<>(futures.size());
+            for (CompletableFuture<byte[]> future : futures) {
+                try {
+                    reobfuscated.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Could not reobfuscate class", e.getCause());
+                }
+            }
+
+            return reobfuscated;
+        });
+    }
+
+    public CompletableFuture<JarReobfuscationReport> submitJar(InputStream input, OutputStream output) throws InterruptedException {
+        return submitJar(DEFAULT_MAPPING, input, output);
+    }
+
+    /**
+     * Reobfuscates JAR like {@link JarReobfuscator}, its classes are reobfuscated by workers of service.
+     * Waits while service has maxRequests active requests. Streams are not closed. Fails with
+     * {@link java.util.zip.ZipException}, if JAR is larger than maxJarSize uncompressed
+     * @param mapping Name of mapping
+     * @param input Zip input stream, read by thread of request
+     * @param output Output for reobfuscated zip, written by thread of request. Incomplete, if request fails or is cancelled
+     * @return Future of report
+     */
+    public CompletableFuture<JarReobfuscationReport> submitJar(String mapping, InputStream input, OutputStream output)
+            throws InterruptedException {
+        ClassReobfuscator reobfuscator = getRequiredReobfuscator(mapping);
+
+        return submit(request -> new JarReobfuscator(reobfuscator, request, cache, maxJarSize).reobfuscate(input, output));
+    }
+
+    /**
+     * Like {@link #submitJar(String, InputStream, OutputStream)}, files are opened and closed by thread of request
+     */
+    public CompletableFuture<JarReobfuscationReport> submitJar(String mapping, File input, File output) throws InterruptedException {
+        ClassReobfuscator reobfuscator = getRequiredReobfuscator(mapping);
+
+        return submit(request -> new JarReobfuscator(reobfuscator, request, cache, maxJarSize).reobfuscate(input, output));
+    }
+
+    /**
+     * @return Count of submitted requests which are not done
+     */
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    /**
+     * @return Count of classes waiting for workers
+     */
+    public int getQueuedClasses() {
+        synchronized (ready) {
+            int count = 0;
+            for (Request<?> request : ready) {
+                count += request.tasks.size();
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Stops accepting requests. Active requests are finished. Executor is shut down only if it was created by builder
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /// Free permits of semaphores, for tests
+    int getFreeRequestSlots() {
+        return requests.availablePermits();
+    }
+
+    int getFreeQueueSlots() {
+        return queued.availablePermits();
+    }
+
+    private ClassReobfuscator getRequiredReobfuscator(String mapping) {
+        ClassReobfuscator reobfuscator = reobfuscators.get(mapping);
+        if (reobfuscator == null) {
+            throw new IllegalStateException("Unknown mapping " + mapping);
+        }
+
+        return reobfuscator;
+    }
+
+    private <T> CompletableFuture<T> submit(Body<T> body) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Service is closed");
+        }
+
+        requests.acquire();
+        active.incrementAndGet();
+
+        Request<T> request = new Request<>(body);
+        // Cancelled by caller or failed, queued classes of request are not needed anymore
+        request.future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                request.cancel();
+            }
+        });
+
+        try {
+            executor.execute(request::read);
+        } catch (RejectedExecutionException e) {
+            request.finish();
+            request.future.completeExceptionally(e);
+        }
+
+        return request.future;
+    }
+
+    /// Adds class of request to queue, starts worker if there are less than parallelism workers
+    private void enqueue(Request<?> request, Runnable task) {
+        try {
+            queued.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Request is cancelled", e);
+        }
+
+        boolean startWorker = false;
+        synchronized (ready) {
+            if (request.future.isDone()) {
+                queued.release();
+                throw new RejectedExecutionException("Request is done");
+            }
+
+            request.tasks.add(task);
+            if (!request.scheduled) {
+                request.scheduled = true;
+                ready.add(request);
+            }
+
+            if (workers < parallelism) {
+                workers++;
+                startWorker = true;
+            }
+        }
+
+        if (startWorker) {
+            try {
+                executor.execute(this::work);
+            } catch (RejectedExecutionException e) {
+                // Queued classes are taken by running workers, if any
+                synchronized (ready) {
+                    workers--;
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    /// Takes classes of requests in turn until queue is empty
+    private void work() {
+        while (true) {
+            Runnable task;
+            synchronized (ready) {
+                Request<?> request = ready.poll();
+                if (request == null) {
+                    workers--;
+                    return;
+                }
+
+                task = request.tasks.poll();
+                if (request.tasks.isEmpty()) {
+                    request.scheduled = false;
+                } else {
+                    ready.add(request);
+                }
+            }
+
+            queued.release();
+            // Task of supplyAsync completes its future by itself, exception never gets here
+            task.run();
+        }
+    }
+
+    private interface Body<T> {
+
+        T run(Request<T> request) throws Exception;
+    }
+
+    /// Request is executor of its own classes, so JarReobfuscator and batches submit classes through scheduler
+    private class Request<T> implements Executor {
+
+        private final Body<T> body;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        // Guarded by ready
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        // Thread reading request, guarded by this. Interrupted by cancel
+        @Nullable
+        private Thread reader;
+        private boolean finished;
+
+        private Request(Body<T> body) {
+            this.body = body;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            enqueue(this, task);
+        }
+
+        private void read() {
+            synchronized (this) {
+                if (future.isDone()) {
+                    finish();
+                    return;
+                }
+
+                reader = Thread.currentThread();
+            }
+
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = body.run(this);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                synchronized (this) {
+                    reader = null;
+                    // Interrupt of cancel must not leak to next task of pooled thread
+                    Thread.interrupted();
+                }
+
+                // Slot is free when caller sees result
+                finish();
+            }
+
+            // Result of cancelled request is dropped
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+
+        private void cancel() {
+            int dropped;
+            synchronized (ready) {
+                dropped = tasks.size();
+                tasks.clear();
+                if (scheduled) {
+                    scheduled = false;
+                    ready.remove(this);
+                }
+            }
+
+            queued.release(dropped);
+
+            synchronized (this) {
+                if (reader != null) {
+                    reader.interrupt();
+                }
+            }
+        }
+
+        private synchronized void finish() {
+            if (!finished) {
+                finished = true;
+                active.decrementAndGet();
+                requests.release();
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<String, ClassReobfuscator> reobfuscators = new LinkedHashMap<>();
+        @Nullable
+        private Executor executor;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int maxRequests = DEFAULT_MAX_REQUESTS;
+        private int maxQueuedClasses = DEFAULT_MAX_QUEUED_CLASSES;
+        private long maxJarSize = DEFAULT_MAX_JAR_SIZE;
+        private int flags;
+        @Nullable
+        private ReobfuscationCache cache;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds mapping, its reobfuscator is created with flags of builder. Mapping is frozen
+         */
+        public Builder mapping(String name, Mapping mapping) {
+            reobfuscators.put(name, new ClassReobfuscator(mapping.freeze(), flags));
+            return this;
+        }
+
+        public Builder mapping(String name, ClassReobfuscator reobfuscator) {
+            reobfuscators.put(name, reobfuscator);
+            return this;
+        }
+
+        /**
+         * @param flags Flags of reobfuscators of mappings added after, e.g. {@link ClassReobfuscator#STREAMING}
+         */
+        public Builder flags(int flags) {
+            this.flags = flags;
+            return this;
+        }
+
+        /**
+         * @param executor Executor, see {@link ReobfuscationService#ReobfuscationService(Map, Executor, int, int, int, ReobfuscationCache)}.
+         *                 By default cached pool of daemon threads is created and shut down on close
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder maxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        public Builder maxQueuedClasses(int maxQueuedClasses) {
+            this.maxQueuedClasses = maxQueuedClasses;
+            return this;
+        }
+
+        /**
+         * @param maxJarSize Maximum total uncompressed size of entries of one JAR in bytes, default {@value #DEFAULT_MAX_JAR_SIZE}
+         */
+        public Builder maxJarSize(long maxJarSize) {
+            this.maxJarSize = maxJarSize;
+            return this;
+        }
+
+        public Builder cache(@Nullable ReobfuscationCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public ReobfuscationService build() {
+            if (executor != null) {
+                return new ReobfuscationService(reobfuscators, executor, false, parallelism, maxRequests,
+                        maxQueuedClasses, maxJarSize, cache);
+            }
+
+            ExecutorService pool = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "reobfuscation-service-" + THREAD_IDS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            return new ReobfuscationService(reobfuscators, pool, true, parallelism, maxRequests, maxQueuedClasses,
+                    maxJarSize, cache);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package net.vitusfox.creativereobfuscator.agent;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ReobfuscatingTransformer} skips its own classes and classes loaded while transforming, and is used by many
+ * loaders and threads at once
+ */
+class ReobfuscatingTransformerTest implements Opcodes {
+
+    private static final Mapping MAPPING = new Mapping("net/minecraft/A net/minecraft/A\n\tfield_1 health\n", 0).freeze();
+
+    @Test
+    void excludedPackages() {
+        ReobfuscatingTransformer transformer = new ReobfuscatingTransformer(MAPPING);
+        ClassLoader loader = new ClassLoader(null) {
+        };
+
+        assertNotNull(transformer.transform(loader, "mod/Test", null, null, createClass("mod/Test", "java/lang/Object")));
+        for (String name : new String[]{"org/objectweb/asm/Test", "net/vitusfox/creativereobfuscator/Test"}) {
+            byte[] bytecode = createClass(name, "java/lang/Object");
+            assertNull(transformer.transform(loader, name, null, null, bytecode));
+            assertNull(transformer.transform(loader, bytecode));
+        }
+        assertEquals(1, transformer.getTransformed());
+    }
+
+    @Test
+    void reentrantClassIsNotTransformed() {
+        ReobfuscatingTransformer transformer = new ReobfuscatingTransformer(MAPPING);
+        AtomicReference<byte[]> nested = new AtomicReference<>(new byte[0]);
+        // Superclass mod/Base is unknown, so it is read from loader, which transforms another class meanwhile
+        ClassLoader loader = new ClassLoader(null) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                if (name.equals("mod/Base.class")) {
+                    nested.set(transformer.transform(this, "mod/Nested", null, null,
+                            createClass("mod/Nested", "java/lang/Object")));
+                }
+
+                return null;
+            }
+        };
+
+        assertNotNull(transformer.transform(loader, "mod/Test", null, null, createClass("mod/Test", "mod/Base")));
+        assertNull(nested.get());
+        assertEquals(1, transformer.getTransformed());
+        assertEquals(1, transformer.getSkipped());
+
+        // Guard is cleared after transformation
+        assertNotNull(transformer.transform(loader, "mod/Nested", null, null, createClass("mod/Nested", "java/lang/Object")));
+    }
+
+    @Test
+    void parallelLoaders() throws Exception {
+        ReobfuscatingTransformer transformer = new ReobfuscatingTransformer(MAPPING);
+        List<ClassLoader> loaders = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            loaders.add(new ClassLoader(null) {
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < 1000; i++) {
+                ClassLoader loader = loaders.get(i % loaders.size());
+                String name = "mod/Test" + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return transformer.transform(loader, name, null, null, createClass(name, "java/lang/Object"));
+                }));
+            }
+
+            start.countDown();
+            for (Future<byte[]> result : results) {
+                assertNotNull(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1000, transformer.getTransformed());
+        assertEquals(0, transformer.getFailed());
+    }
+
+    /// Class reading mapped field
+    private static byte[] createClass(String name, String superName) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC, name, null, superName, null);
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        method.visitInsn(ACONST_NULL);
+        method.visitFieldInsn(GETFIELD, "net/minecraft/A", "field_1", "I");
+        method.visitInsn(POP);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
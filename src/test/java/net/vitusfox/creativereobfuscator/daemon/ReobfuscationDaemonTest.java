@@ -0,0 +1,148 @@
+package net.vitusfox.creativereobfuscator.daemon;
+
+import net.vitusfox.creativereobfuscator.Util;
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.service.ReobfuscationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks of {@link ReobfuscationDaemon} before requests reach service: token, Host header and body size
+ */
+class ReobfuscationDaemonTest {
+
+    private static final String TOKEN = "secret";
+    private static final int MAX_BODY_SIZE = 4096;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private ReobfuscationService service;
+    private ReobfuscationDaemon daemon;
+
+    @BeforeEach
+    void start() throws IOException {
+        service = ReobfuscationService.builder()
+                .mapping(ReobfuscationService.DEFAULT_MAPPING, new Mapping("net/minecraft/A net/minecraft/A\n\tfield_1 health\n", 0))
+                .build();
+        daemon = new ReobfuscationDaemon(service, 0, TOKEN, MAX_BODY_SIZE);
+        daemon.start();
+    }
+
+    @AfterEach
+    void stop() {
+        daemon.close();
+        service.close();
+    }
+
+    @Test
+    void token() throws IOException {
+        assertEquals(200, request("GET /status", "127.0.0.1", "Bearer " + TOKEN, null, false));
+        assertEquals(401, request("GET /status", "127.0.0.1", null, null, false));
+        assertEquals(401, request("GET /status", "127.0.0.1", "Bearer wrong", null, false));
+        assertEquals(401, request("GET /status", "127.0.0.1", "Bearer " + TOKEN + "x", null, false));
+        assertEquals(401, request("GET /status", "127.0.0.1", "Basic " + TOKEN, null, false));
+    }
+
+    @Test
+    void host() throws IOException {
+        assertEquals(200, request("GET /status", "localhost:" + daemon.getPort(), "Bearer " + TOKEN, null, false));
+        assertEquals(200, request("GET /status", "[::1]:8080", "Bearer " + TOKEN, null, false));
+        assertEquals(403, request("GET /status", "attacker.example", "Bearer " + TOKEN, null, false));
+        assertEquals(403, request("GET /status", "localhost.attacker.example:80", "Bearer " + TOKEN, null, false));
+        // Host is checked before token, so rebinding page learns nothing about token
+        assertEquals(403, request("GET /status", "attacker.example", null, null, false));
+    }
+
+    @Test
+    void bodySize() throws IOException {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "test/C", null, "java/lang/Object", null);
+        writer.visitEnd();
+        byte[] bytecode = writer.toByteArray();
+
+        assertEquals(200, request("POST /class", "127.0.0.1", "Bearer " + TOKEN, bytecode, false));
+        assertEquals(200, request("POST /class", "127.0.0.1", "Bearer " + TOKEN, bytecode, true));
+
+        // Declared length is rejected before body is read, chunked body while it is read
+        byte[] large = new byte[MAX_BODY_SIZE + 1];
+        assertEquals(413, request("POST /class", "127.0.0.1", "Bearer " + TOKEN, large, false));
+        assertEquals(413, request("POST /class", "127.0.0.1", "Bearer " + TOKEN, large, true));
+
+        // Entry is stored, so JAR is larger than limit
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(jar)) {
+            zip.setMethod(ZipOutputStream.STORED);
+            ZipEntry entry = new ZipEntry("data.bin");
+            entry.setSize(large.length);
+            entry.setCrc(crc(large));
+            zip.putNextEntry(entry);
+            zip.write(large);
+            zip.closeEntry();
+        }
+        assertEquals(413, request("POST /jar", "127.0.0.1", "Bearer " + TOKEN, jar.toByteArray(), true));
+    }
+
+    @Test
+    void unknownOption() {
+        assertThrows(IllegalArgumentException.class, () -> ReobfuscationDaemon.main(new String[]{"--unknown", "1"}));
+        assertThrows(IllegalArgumentException.class, () -> ReobfuscationDaemon.main(new String[]{"--port"}));
+    }
+
+    /// Raw HTTP/1.1 request, HttpURLConnection does not allow to set Host
+    private int request(String request, String host, String authorization, byte[] body, boolean chunked) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+
+            StringBuilder head = new StringBuilder(request).append(" HTTP/1.1\r\nHost: ").append(host)
+                    .append("\r\nConnection: close\r\n");
+            if (authorization != null) {
+                head.append("Authorization: ").append(authorization).append("\r\n");
+            }
+            if (body != null) {
+                head.append(chunked ? "Transfer-Encoding: chunked" : "Content-Length: " + body.length).append("\r\n");
+            }
+            head.append("\r\n");
+
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+            if (body != null && chunked) {
+                // Two chunks, so limit is crossed in the middle of body
+                int half = body.length / 2;
+                writeChunk(out, body, 0, half);
+                writeChunk(out, body, half, body.length - half);
+                out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            } else if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+
+            String response = new String(Util.readFully(socket.getInputStream()), StandardCharsets.ISO_8859_1);
+            assertTrue(response.startsWith("HTTP/1.1 "), response);
+            return Integer.parseInt(response.substring(9, 12));
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static void writeChunk(OutputStream out, byte[] body, int offset, int length) throws IOException {
+        out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body, offset, length);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+}
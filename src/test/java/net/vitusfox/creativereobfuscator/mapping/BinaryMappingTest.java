@@ -0,0 +1,130 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BinaryMapping} gives the same mapping as TSRG file, and broken cache is a miss of
+ * {@link Mapping#getReobfuscationMapping(File)}, not a failure
+ */
+class BinaryMappingTest {
+
+    private static final String TSRG = "a net/minecraft/A\n\tfield_1 health\n\tfunc_1 (Lnet/minecraft/A;I)V tick\n"
+            + "\tfunc_2 ()V tick\nb net/minecraft/B\n\tfield_2 speed\nc net/minecraft/\u00c9t\u00e9\n";
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("binary-mapping");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        Mapping mapping = new Mapping(TSRG, Mapping.REVERSE_MAPPINGS);
+        File file = directory.resolve("mapping.bin").toFile();
+        BinaryMapping.write(mapping, 42, file);
+
+        Mapping read = BinaryMapping.read(file, 42);
+        assertNotNull(read);
+        assertTrue(read.isFrozen());
+        assertEquals(Mapping.REVERSE_MAPPINGS, read.getFlags());
+        assertArrayEquals(mapping.fingerprint(), read.fingerprint());
+
+        ClassMapping classMapping = read.getByName("net/minecraft/A");
+        assertTrue(classMapping.isFrozen());
+        assertEquals("a", classMapping.getObfuscatedClass());
+        assertEquals("field_1", classMapping.getFieldByName("health"));
+        assertEquals("func_1", classMapping.getMethodByName("tick", "(Lnet/minecraft/A;I)V"));
+        assertEquals("func_2", classMapping.getMethodByName("tick", "()V"));
+        assertEquals("c", read.getByName("net/minecraft/\u00c9t\u00e9").getObfuscatedClass());
+        assertThrows(IllegalStateException.class, () -> read.add(mapping.getByName("net/minecraft/B")));
+
+        // Frozen mapping is written the same way
+        File again = directory.resolve("again.bin").toFile();
+        BinaryMapping.write(read, 42, again);
+        assertArrayEquals(mapping.fingerprint(), BinaryMapping.read(again, 42).fingerprint());
+
+        // Equal names are one String instance of string table
+        String[] names = classMapping.getMethods().keySet().stream().map(Pair::getFirst).toArray(String[]::new);
+        assertEquals(2, names.length);
+        assertSame(names[0], names[1]);
+    }
+
+    @Test
+    void outdatedOrCorruptCacheIsMiss() throws IOException {
+        File file = directory.resolve("mapping.bin").toFile();
+        BinaryMapping.write(new Mapping(TSRG, 0), 42, file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        assertNull(BinaryMapping.read(file, 43));
+        assertNull(BinaryMapping.read(directory.resolve("missing.bin").toFile(), 42));
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(BinaryMapping.read(file, 42));
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes, 10));
+        assertNull(BinaryMapping.read(file, 42));
+
+        // Huge count of strings
+        byte[] broken = bytes.clone();
+        Arrays.fill(broken, 20, 25, (byte) 0xFF);
+        Files.write(file.toPath(), broken);
+        assertNull(BinaryMapping.read(file, 42));
+
+        assertThrows(IllegalStateException.class, () -> BinaryMapping.read(ByteBuffer.wrap(new byte[16])));
+    }
+
+    @Test
+    void loadRewritesCorruptCache() throws IOException {
+        File tsrg = directory.resolve("mapping.tsrg").toFile();
+        Files.write(tsrg.toPath(), TSRG.getBytes(StandardCharsets.UTF_8));
+        File cache = BinaryMapping.getCacheFile(tsrg);
+        Files.write(cache.toPath(), new byte[]{1, 2, 3});
+
+        Pair<LoadState, Mapping> loaded = Mapping.getReobfuscationMapping(tsrg);
+        assertEquals(LoadState.LOADED_FROM_FILE, loaded.getFirst());
+        assertTrue(loaded.getSecond().isFrozen());
+        assertArrayEquals(new Mapping(TSRG, 0).fingerprint(), loaded.getSecond().fingerprint());
+
+        // Cache is rewritten and used by next load
+        Mapping cached = BinaryMapping.read(cache, BinaryMapping.hash(tsrg));
+        assertNotNull(cached);
+        assertArrayEquals(loaded.getSecond().fingerprint(), Mapping.getReobfuscationMapping(tsrg).getSecond().fingerprint());
+    }
+
+    @Test
+    void loadWithoutWritableCache() throws IOException {
+        File tsrg = directory.resolve("mapping.tsrg").toFile();
+        Files.write(tsrg.toPath(), TSRG.getBytes(StandardCharsets.UTF_8));
+        // Directory in place of cache file can be neither read nor replaced
+        Path cache = BinaryMapping.getCacheFile(tsrg).toPath();
+        Files.createDirectory(cache);
+        Files.write(cache.resolve("entry"), new byte[1]);
+
+        Mapping mapping = Mapping.getReobfuscationMapping(tsrg).getSecond();
+        assertEquals("health", mapping.getByName("net/minecraft/A").getFieldByName("field_1"));
+        assertTrue(Files.isDirectory(cache));
+    }
+}
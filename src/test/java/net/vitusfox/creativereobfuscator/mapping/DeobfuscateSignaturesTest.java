@@ -0,0 +1,117 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel {@link Mapping#deobfuscateSignatures()} gives the same mapping as sequential regex-based version it replaced
+ */
+class DeobfuscateSignaturesTest {
+
+    private static Mapping mcp;
+
+    @BeforeAll
+    static void readMapping() throws IOException {
+        try (InputStream is = DeobfuscateSignaturesTest.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            assertNotNull(is, "mcp_mappings.tsrg is not in classpath");
+            mcp = new Mapping(new String(Util.readFully(is), StandardCharsets.UTF_8), Mapping.REVERSED_CLASSES);
+        }
+    }
+
+    @Test
+    void bundledMapping() {
+        Mapping expected = legacyDeobfuscateSignatures(mcp);
+        Mapping parallel = mcp.deobfuscateSignatures();
+
+        assertSameMapping(expected, parallel);
+        // Classes are independent, so the result does not depend on scheduling
+        assertSameMapping(parallel, mcp.deobfuscateSignatures());
+        assertSameMapping(expected, mcp.freeze().deobfuscateSignatures());
+    }
+
+    @Test
+    void sequentialPerClass() {
+        HashMap<String, String> dict = new HashMap<>();
+        for (Map.Entry<String, ClassMapping> entry : mcp.getClasses().entrySet()) {
+            dict.put(entry.getKey(), entry.getValue().getDeobfuscatedClass());
+        }
+
+        Mapping parallel = mcp.deobfuscateSignatures();
+        for (Map.Entry<String, ClassMapping> entry : mcp.getClasses().entrySet()) {
+            assertEquals(entry.getValue().deobfuscateMethodsSignature(dict).getMethods(),
+                    parallel.getByName(entry.getKey()).getMethods(), entry.getKey());
+        }
+    }
+
+    /// Regex version replaced class names one after another, so a -> b, b -> c renamed La; to Lc;. Descriptor is
+    /// scanned once now, every class is renamed once
+    @Test
+    void classesRenamedOnce() {
+        Mapping mapping = new Mapping("a b\n\tm (La;Lb;[La;)V n\nb c\n\tm (Lb;Lx/a;I)Lb; n\n", Mapping.REVERSED_CLASSES);
+        Mapping deobfuscated = mapping.deobfuscateSignatures();
+
+        assertEquals("m", deobfuscated.getByName("a").getMethodByName("n", "(Lb;Lc;[Lb;)V"));
+        assertEquals("m", deobfuscated.getByName("b").getMethodByName("n", "(Lc;Lx/a;I)Lc;"));
+        assertEquals(mapping.getByName("a").getFields(), deobfuscated.getByName("a").getFields());
+    }
+
+    @Test
+    void malformedSignatureIsKept() {
+        Mapping mapping = new Mapping("a b\n\tm (La)V n\n", Mapping.REVERSED_CLASSES);
+        assertEquals("m", mapping.deobfuscateSignatures().getByName("a").getMethodByName("n", "(La)V"));
+    }
+
+    /// Copy of sequential version used before DescriptorTranslator
+    private static Mapping legacyDeobfuscateSignatures(Mapping source) {
+        HashMap<String, String> dict = new HashMap<>();
+        for (Map.Entry<String, ClassMapping> entry : source.getClasses().entrySet()) {
+            dict.put(entry.getKey(), entry.getValue().getDeobfuscatedClass());
+        }
+
+        @SuppressWarnings("deprecation")
+        Pattern pattern = ClassMapping.SIGNATURE_CLASS_PATTERN;
+        Mapping mapping = new Mapping("", source.getFlags());
+        for (ClassMapping classMapping : source.getClasses().values()) {
+            HashMap<Pair<String, String>, String> methods = new HashMap<>();
+            for (Map.Entry<Pair<String, String>, String> entry : classMapping.getMethods().entrySet()) {
+                String out = entry.getKey().getSecond();
+                Matcher matcher = pattern.matcher(entry.getKey().getSecond());
+                while (matcher.find()) {
+                    String deobfuscatedClass = dict.get(matcher.group());
+                    if (deobfuscatedClass != null) {
+                        out = out.replace("L" + matcher.group() + ";", "L" + deobfuscatedClass + ";");
+                    }
+                }
+
+                methods.put(new Pair<>(entry.getKey().getFirst(), out), entry.getValue());
+            }
+
+            mapping.add(classMapping.withNewMappings(classMapping.getFields(), methods));
+        }
+
+        return mapping;
+    }
+
+    private static void assertSameMapping(Mapping expected, Mapping actual) {
+        assertEquals(expected.getClasses().keySet(), actual.getClasses().keySet());
+
+        for (Map.Entry<String, ClassMapping> entry : expected.getClasses().entrySet()) {
+            ClassMapping actualClass = actual.getByName(entry.getKey());
+            assertEquals(entry.getValue().getDeobfuscatedClass(), actualClass.getDeobfuscatedClass());
+            assertEquals(entry.getValue().getFields(), actualClass.getFields(), entry.getKey());
+            assertEquals(entry.getValue().getMethods(), actualClass.getMethods(), entry.getKey());
+        }
+    }
+}
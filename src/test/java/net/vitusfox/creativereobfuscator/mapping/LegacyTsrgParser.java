@@ -0,0 +1,61 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+/**
+ * Regex-based TSRG parser which was used by {@link Mapping} before {@link TsrgReader}.
+ * Copy of the one kept for benchmarks, reference for {@link TsrgReaderTest}
+ */
+class LegacyTsrgParser {
+
+    static Mapping parse(String tsrg, int flags) {
+        Mapping mapping = new Mapping("", flags);
+
+        ClassMapping.Builder builder = null;
+        for (String s : tsrg.split("\n")) {
+            if (s.trim().isEmpty()) {
+                continue;
+            }
+
+            // Class definition
+            if (!s.startsWith("\t")) {
+                if (MappingCheckers.isClass(s)) {
+                    String[] split = s.split(" ");
+
+                    if (split.length != 2) {
+                        throw new IllegalStateException("Invalid size of splitted class definer! Got: " + split.length + ", needs 2");
+                    }
+
+                    if (builder != null) {
+                        mapping.add(builder.build());
+                    }
+
+                    builder = mapping.getBuilder(split[0], split[1]);
+
+                    continue;
+                }
+            }
+
+            if (builder == null) {
+                throw new IllegalStateException("ClassBuilder is not defined on scope somewhere with line " + s);
+            }
+
+            // Method and fields definition
+            MappingCheckers.Type type = MappingCheckers.getType(s);
+
+            if (type == MappingCheckers.Type.NONE) {
+                throw new IllegalStateException("Unknown type of string " + s);
+            }
+
+            if (type == MappingCheckers.Type.FIELD) {
+                builder.addField(new FieldMapping(s));
+            } else if (type == MappingCheckers.Type.METHOD) {
+                builder.addMethod(new MethodMapping(s));
+            }
+        }
+
+        if (builder != null) {
+            mapping.add(builder.build());
+        }
+
+        return mapping;
+    }
+}
@@ -0,0 +1,107 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import net.vitusfox.creativereobfuscator.Util;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link Mapping#freeze()} keeps lookups of mapping, shares equal strings and can not be changed
+ */
+class MappingFreezeTest {
+
+    private static String tsrg;
+
+    @BeforeAll
+    static void readMapping() throws IOException {
+        try (InputStream is = MappingFreezeTest.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            assertNotNull(is, "mcp_mappings.tsrg is not in classpath");
+            tsrg = new String(Util.readFully(is), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void lookupsEqualOriginal() {
+        for (int flags : new int[]{Mapping.REVERSED_CLASSES, Mapping.REVERSE_MAPPINGS}) {
+            Mapping mapping = new Mapping(tsrg, flags);
+            Mapping frozen = mapping.freeze();
+
+            assertTrue(frozen.isFrozen());
+            assertEquals(flags, frozen.getFlags());
+            assertEquals(mapping.getClasses().keySet(), frozen.getClasses().keySet());
+            assertNull(frozen.getByName("not/a/Class"));
+
+            for (Map.Entry<String, ClassMapping> entry : mapping.getClasses().entrySet()) {
+                ClassMapping expected = entry.getValue();
+                ClassMapping actual = frozen.getByName(entry.getKey());
+
+                assertTrue(actual.isFrozen());
+                assertEquals(expected.getObfuscatedClass(), actual.getObfuscatedClass());
+                assertEquals(expected.getDeobfuscatedClass(), actual.getDeobfuscatedClass());
+                assertEquals(expected.getFields(), actual.getFields(), entry.getKey());
+                assertEquals(expected.getMethods(), actual.getMethods(), entry.getKey());
+
+                for (Map.Entry<String, String> field : expected.getFields().entrySet()) {
+                    assertEquals(field.getValue(), actual.getFieldByName(field.getKey()));
+                    assertNull(actual.getFieldByName(field.getKey() + "$"));
+                }
+
+                for (Map.Entry<Pair<String, String>, String> method : expected.getMethods().entrySet()) {
+                    String name = method.getKey().getFirst();
+                    String signature = method.getKey().getSecond();
+                    assertEquals(method.getValue(), actual.getMethodByName(name, signature));
+                    assertEquals(expected.getMethodByName(name, "()V"), actual.getMethodByName(name, "()V"));
+                }
+            }
+        }
+    }
+
+    @Test
+    void equalStringsAreShared() {
+        Mapping frozen = new Mapping(tsrg, Mapping.REVERSED_CLASSES).freeze();
+
+        HashMap<String, String> seen = new HashMap<>();
+        int shared = 0;
+        for (ClassMapping classMapping : frozen.getClasses().values()) {
+            for (Pair<String, String> method : classMapping.getMethods().keySet()) {
+                for (String s : new String[]{method.getFirst(), method.getSecond()}) {
+                    String first = seen.putIfAbsent(s, s);
+                    if (first != null) {
+                        assertSame(first, s, s);
+                        shared++;
+                    }
+                }
+            }
+        }
+
+        // Descriptors like ()V repeat in most classes
+        assertTrue(shared > 1000, shared + " shared strings");
+    }
+
+    @Test
+    void frozenIsImmutable() {
+        Mapping frozen = new Mapping("a net/minecraft/A\n\tb health\n", 0).freeze();
+
+        assertSame(frozen, frozen.freeze());
+        assertThrows(IllegalStateException.class, () -> frozen.add(ClassMapping.builder("c", "d").build()));
+        assertEquals("health", frozen.getByName("net/minecraft/A").getFieldByName("b"));
+
+        // Fields of frozen class are copies, changing them does not change mapping
+        frozen.getByName("net/minecraft/A").getFields().clear();
+        assertEquals("health", frozen.getByName("net/minecraft/A").getFieldByName("b"));
+    }
+
+    @Test
+    void fingerprintIsKept() {
+        Mapping mapping = new Mapping(tsrg, Mapping.REVERSED_CLASSES);
+        assertArrayEquals(mapping.fingerprint(), mapping.freeze().fingerprint());
+    }
+}
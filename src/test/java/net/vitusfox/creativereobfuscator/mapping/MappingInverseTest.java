@@ -0,0 +1,62 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link Mapping#inverse()} finds the same members as original mapping in the opposite direction
+ */
+class MappingInverseTest {
+
+    // net/minecraft/A -> a, health -> field_1, tick -> func_1. Descriptor is in names of original keys
+    private static final String TSRG = "a net/minecraft/A\n\tfield_1 health\n\tfunc_1 (Lnet/minecraft/A;I)V tick\n"
+            + "b net/minecraft/B\n\tfield_2 speed\n";
+
+    @Test
+    void roundTrip() {
+        Mapping mapping = new Mapping(TSRG, Mapping.REVERSE_MAPPINGS);
+        for (Mapping original : new Mapping[]{mapping, mapping.freeze()}) {
+            ClassMapping forward = original.getByName("net/minecraft/A");
+            assertEquals("a", forward.getObfuscatedClass());
+            assertEquals("field_1", forward.getFieldByName("health"));
+            assertEquals("func_1", forward.getMethodByName("tick", "(Lnet/minecraft/A;I)V"));
+
+            ClassMapping backward = original.inverse().getByName("a");
+            assertNotNull(backward);
+            assertEquals("net/minecraft/A", backward.getObfuscatedClass());
+            assertEquals("health", backward.getFieldByName("field_1"));
+            // Descriptor is translated to names of the opposite side
+            assertEquals("tick", backward.getMethodByName("func_1", "(La;I)V"));
+            assertNull(backward.getMethodByName("func_1", "(Lnet/minecraft/A;I)V"));
+            assertNull(backward.getFieldByName("health"));
+
+            assertEquals("speed", original.inverse().getByName("b").getFieldByName("field_2"));
+            assertNull(original.inverse().getByName("net/minecraft/A"));
+            assertEquals(2, original.inverse().getClasses().size());
+        }
+    }
+
+    @Test
+    void inverseOfInverse() {
+        Mapping mapping = new Mapping(TSRG, Mapping.REVERSE_MAPPINGS).freeze();
+        assertSame(mapping, mapping.inverse().inverse());
+        assertSame(mapping.inverse(), mapping.inverse());
+        assertTrue(mapping.inverse().isFrozen());
+        assertThrows(UnsupportedOperationException.class, () -> mapping.inverse().add(mapping.getByName("net/minecraft/B")));
+    }
+
+    @Test
+    void collidingMembers() {
+        // Both fields have result name x, inverse keeps the first one for lookups and for getFields
+        Mapping mapping = new Mapping("a net/minecraft/A\n\tfield_1 x\n\tfield_2 x\n", 0).freeze();
+        ClassMapping original = mapping.getByName("net/minecraft/A");
+        ClassMapping inverse = mapping.inverse().getByName(original.getObfuscatedClass());
+
+        String kept = inverse.getFieldByName("x");
+        assertTrue("field_1".equals(kept) || "field_2".equals(kept), kept);
+        assertEquals(1, inverse.getFields().size());
+        assertEquals(kept, inverse.getFields().get("x"));
+        assertEquals("x", original.getFieldByName(kept));
+    }
+}
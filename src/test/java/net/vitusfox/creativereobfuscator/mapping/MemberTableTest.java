@@ -0,0 +1,143 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link MemberTable} finds the same members as HashMap it replaced, also for colliding hashes, and does not allocate
+ */
+class MemberTableTest {
+
+    // "Aa" and "BB" have equal hashes, so do all their concatenations
+    private static final String[] COLLIDING = {"Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB"};
+    private static final String[] SIGNATURES = {"()V", "(I)V", "(Lnet/minecraft/A;)V", "()Lnet/minecraft/A;", "(J)I"};
+
+    @Test
+    void fieldsEqualHashMap() {
+        HashMap<String, String> fields = createFields(new Random(1), 500);
+        MemberTable table = MemberTable.ofFields(fields, null);
+
+        assertEquals(fields.size(), table.size());
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            // New String, so lookup does not rely on identity of key
+            assertEquals(field.getValue(), table.get(new String(field.getKey())), field.getKey());
+            assertNull(table.get(field.getKey() + "_"));
+        }
+        assertEquals(fields, table.toFieldMap());
+    }
+
+    @Test
+    void methodsEqualHashMap() {
+        HashMap<Pair<String, String>, String> methods = createMethods(new Random(2), 500);
+        MemberTable table = MemberTable.ofMethods(methods, new HashMap<>());
+
+        assertEquals(methods.size(), table.size());
+        for (Map.Entry<Pair<String, String>, String> method : methods.entrySet()) {
+            String name = method.getKey().getFirst();
+            String signature = method.getKey().getSecond();
+            assertEquals(method.getValue(), table.get(new String(name), new String(signature)), method.getKey().toString());
+
+            // Overloads and names of other members must not match
+            for (String other : SIGNATURES) {
+                assertEquals(methods.get(new Pair<>(name, other)), table.get(name, other));
+            }
+            assertNull(table.get(name + "_", signature));
+        }
+        assertEquals(methods, table.toMethodMap());
+    }
+
+    @Test
+    void emptyTable() {
+        assertNull(MemberTable.ofFields(new HashMap<>(), null).get("a"));
+        assertNull(MemberTable.ofMethods(new HashMap<>(), null).get("a", "()V"));
+        assertNull(ClassMapping.builder("a", "b").build().getMethodByName("a", "()V"));
+    }
+
+    @Test
+    void lookupDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return; // JVM does not count allocated bytes
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+        HashMap<Pair<String, String>, String> methods = createMethods(new Random(3), 200);
+        ClassMapping classMapping = ClassMapping.builder("a", "b").build().withNewMappings(new HashMap<>(), methods);
+        List<String> names = new ArrayList<>();
+        List<String> signatures = new ArrayList<>();
+        for (Pair<String, String> key : methods.keySet()) {
+            names.add(key.getFirst());
+            signatures.add(key.getSecond());
+        }
+
+        int found = lookUp(classMapping, names, signatures); // Builds table and warms up
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100; i++) {
+            found += lookUp(classMapping, names, signatures);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(101 * methods.size(), found);
+        // 20000 lookups with a key object each would take hundreds of KB, bytes left are of allocation counter
+        assertTrue(allocated < 16 * 1024, allocated + " bytes allocated");
+    }
+
+    private static int lookUp(ClassMapping classMapping, List<String> names, List<String> signatures) {
+        int found = 0;
+        for (int i = 0; i < names.size(); i++) {
+            if (classMapping.getMethodByName(names.get(i), signatures.get(i)) != null) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    private static HashMap<String, String> createFields(Random random, int count) {
+        HashMap<String, String> fields = new HashMap<>();
+        for (String name : COLLIDING) {
+            fields.put(name, "field_" + fields.size());
+        }
+
+        while (fields.size() < count) {
+            fields.put(randomName(random), "field_" + fields.size());
+        }
+
+        return fields;
+    }
+
+    private static HashMap<Pair<String, String>, String> createMethods(Random random, int count) {
+        HashMap<Pair<String, String>, String> methods = new HashMap<>();
+        for (String name : COLLIDING) {
+            for (String signature : SIGNATURES) {
+                methods.put(new Pair<>(name, signature), "func_" + methods.size());
+            }
+        }
+
+        while (methods.size() < count) {
+            methods.put(new Pair<>(randomName(random), SIGNATURES[random.nextInt(SIGNATURES.length)]), "func_" + methods.size());
+        }
+
+        return methods;
+    }
+
+    /// Short names like obfuscated ones, so many of them collide in table slots
+    private static String randomName(Random random) {
+        char[] name = new char[1 + random.nextInt(3)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+
+        return new String(name);
+    }
+}
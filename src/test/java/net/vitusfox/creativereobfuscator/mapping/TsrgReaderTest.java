@@ -0,0 +1,132 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Util;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TsrgReader} gives the same mapping as regex parser it replaced, {@link LegacyTsrgParser}, and rejects the same lines
+ */
+class TsrgReaderTest {
+
+    @Test
+    void bundledMapping() throws IOException {
+        String tsrg;
+        try (InputStream is = TsrgReaderTest.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            assertNotNull(is, "mcp_mappings.tsrg is not in classpath");
+            tsrg = new String(Util.readFully(is), StandardCharsets.UTF_8);
+        }
+
+        assertSameResult(tsrg, Mapping.REVERSED_CLASSES);
+        assertSameResult(tsrg, Mapping.REVERSE_MAPPINGS);
+        assertTrue(new Mapping(tsrg, Mapping.REVERSED_CLASSES).getClasses().size() > 1000);
+    }
+
+    @Test
+    void crlfLineEndings() throws IOException {
+        String lf = "a net/minecraft/A\n\tb field\n\tc (La;)V method\nd net/minecraft/D\n\te (I)La; other\n";
+        String crlf = lf.replace("\n", "\r\n");
+
+        // Regex parser kept \r in last name of line, so it is compared on the same text with LF
+        assertSameMapping(LegacyTsrgParser.parse(lf, 0), new Mapping(crlf, 0));
+        assertSameMapping(LegacyTsrgParser.parse(lf, 0), new Mapping(new StringReader(crlf), 0));
+        assertEquals("method", new Mapping(crlf, 0).getByName("net/minecraft/A").getMethodByName("c", "(La;)V"));
+    }
+
+    @Test
+    void blankLines() throws IOException {
+        assertSameResult("\n\na b\n\n\tc d\n   \n\t\n\te (I)V f\n\n", 0);
+        assertSameResult("a b\n\tc d", 0);
+        assertSameResult("", 0);
+        assertSameResult("\n \n\t\n", 0);
+    }
+
+    @Test
+    void lastClassIsAdded() {
+        Mapping mapping = new Mapping("a b\n\tc d\ne f", 0);
+        assertNotNull(mapping.getByName("b"));
+        assertNotNull(mapping.getByName("f"));
+    }
+
+    /// TSRG has no comments, both parsers take "# text" for class line and reject other comment lines
+    @Test
+    void comments() throws IOException {
+        assertSameResult("# comment\na b\n\tc d\n", 0);
+        assertSameResult("a b\n# comment\n\tc d\n", 0);
+        assertSameResult("a b\n\t# c\n", 0);
+        assertSameResult("#comment\na b\n", 0);
+        assertSameResult("# comment with spaces\na b\n", 0);
+    }
+
+    @Test
+    void malformedMemberLines() throws IOException {
+        String[] lines = {
+                "\tc",              // Single token
+                "\tc d e",          // Third token is not signature
+                "\tc (I b",         // Unclosed signature
+                "\tc () d",         // No return type
+                "\tc (I) V d",      // Space in signature
+                "\tc (I)V d e",     // Extra token
+                "\t c d",           // Space after tab
+                "\tc  d",           // Two spaces
+                "\tc d ",           // Trailing space
+        };
+
+        for (String line : lines) {
+            assertSameResult("a b\n" + line + '\n', 0);
+            assertThrows(IllegalStateException.class, () -> new Mapping("a b\n" + line + '\n', 0), line);
+        }
+
+        // Member before any class
+        assertSameResult("\tc d\na b\n", 0);
+        assertThrows(IllegalStateException.class, () -> new Mapping("\tc d\na b\n", 0));
+    }
+
+    @Test
+    void malformedClassLines() throws IOException {
+        for (String line : new String[]{"a", "a b c", "a b ", "a\tb"}) {
+            assertSameResult(line + '\n', 0);
+        }
+    }
+
+    @Test
+    void acceptedMemberLines() throws IOException {
+        assertSameResult("a b\n\tc (I)V d\n\te ()V f\n\tg (I)V; h\n\ti (I)V\n", 0);
+    }
+
+    /// Both parsers fail on the same texts, or give equal mappings. Reader overload gives the same as String one
+    private static void assertSameResult(String tsrg, int flags) throws IOException {
+        Mapping legacy;
+        try {
+            legacy = LegacyTsrgParser.parse(tsrg, flags);
+        } catch (IllegalStateException e) {
+            assertThrows(IllegalStateException.class, () -> new Mapping(tsrg, flags), "Legacy parser rejects " + tsrg);
+            assertThrows(IllegalStateException.class, () -> new Mapping(new StringReader(tsrg), flags));
+            return;
+        }
+
+        assertSameMapping(legacy, new Mapping(tsrg, flags));
+        assertSameMapping(legacy, new Mapping(new StringReader(tsrg), flags));
+    }
+
+    private static void assertSameMapping(Mapping expected, Mapping actual) {
+        assertEquals(expected.getClasses().keySet(), actual.getClasses().keySet());
+
+        for (Map.Entry<String, ClassMapping> entry : expected.getClasses().entrySet()) {
+            ClassMapping expectedClass = entry.getValue();
+            ClassMapping actualClass = actual.getClasses().get(entry.getKey());
+
+            assertEquals(expectedClass.getObfuscatedClass(), actualClass.getObfuscatedClass(), entry.getKey());
+            assertEquals(expectedClass.getDeobfuscatedClass(), actualClass.getDeobfuscatedClass(), entry.getKey());
+            assertEquals(expectedClass.getFields(), actualClass.getFields(), entry.getKey());
+            assertEquals(expectedClass.getMethods(), actualClass.getMethods(), entry.getKey());
+        }
+    }
+}
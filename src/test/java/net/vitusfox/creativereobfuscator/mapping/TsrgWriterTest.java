@@ -0,0 +1,135 @@
+package net.vitusfox.creativereobfuscator.mapping;
+
+import net.vitusfox.creativereobfuscator.Util;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TsrgWriter} output is read back as the same mapping, sorted output is deterministic, file is replaced whole
+ */
+class TsrgWriterTest {
+
+    // Class names are equal in both columns, as in saved reobfuscation mapping
+    private static final String TSRG = "net/minecraft/B net/minecraft/B\n"
+            + "\tfield_2 speed\n"
+            + "\tfield_1 health\n"
+            + "\tfunc_2 (I)V tick\n"
+            + "\tfunc_1 ()V tick\n"
+            + "net/minecraft/A net/minecraft/A\n"
+            + "\tfunc_3 (Lnet/minecraft/B;)Lnet/minecraft/A; create\n";
+    private static final String SORTED = "net/minecraft/A net/minecraft/A\n"
+            + "\tfunc_3 (Lnet/minecraft/B;)Lnet/minecraft/A; create\n"
+            + "net/minecraft/B net/minecraft/B\n"
+            + "\tfield_1 health\n"
+            + "\tfield_2 speed\n"
+            + "\tfunc_1 ()V tick\n"
+            + "\tfunc_2 (I)V tick\n";
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("tsrg-writer");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void sortedOutput() throws IOException {
+        File file = directory.resolve("mapping.tsrg").toFile();
+
+        new Mapping(TSRG, 0).save(file, true);
+        assertEquals(SORTED, read(file));
+
+        // Any insertion order gives the same bytes
+        new Mapping(SORTED, 0).save(file, true);
+        assertEquals(SORTED, read(file));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        // Non-ASCII name after ASCII part, and name longer than buffer of writer
+        char[] longName = new char[100_000];
+        Arrays.fill(longName, 'x');
+        String tsrg = TSRG + "net/minecraft/C net/minecraft/C\n"
+                + "\tfield_3 sant\u00e9\n"
+                + "\tfield_4 " + new String(longName) + "\n"
+                + "\tfunc_4 (Lnet/minecraft/C;)V \u00e9t\u00e9_" + new String(longName, 0, 70_000) + "\n";
+        Mapping mapping = new Mapping(tsrg, 0);
+
+        for (boolean sorted : new boolean[]{false, true}) {
+            File file = directory.resolve("mapping-" + sorted + ".tsrg").toFile();
+            mapping.save(file, sorted);
+            assertSameMapping(mapping, new Mapping(read(file), 0));
+        }
+    }
+
+    @Test
+    void bundledMapping() throws IOException {
+        String tsrg;
+        try (InputStream is = TsrgWriterTest.class.getResourceAsStream("/mcp_mappings.tsrg")) {
+            assertNotNull(is, "mcp_mappings.tsrg is not in classpath");
+            tsrg = new String(Util.readFully(is), StandardCharsets.UTF_8);
+        }
+
+        File first = directory.resolve("first.tsrg").toFile();
+        File second = directory.resolve("second.tsrg").toFile();
+        Mapping mapping = new Mapping(tsrg, Mapping.REVERSED_CLASSES).anonymizeClasses();
+        mapping.save(first, true);
+
+        // Saved file is much larger than buffer of writer, saving what was read gives the same bytes
+        Mapping loaded = new Mapping(read(first), 0);
+        assertSameMapping(mapping, loaded);
+        loaded.freeze().save(second, true);
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    void fileIsReplaced() throws IOException {
+        Path file = directory.resolve("mapping.tsrg");
+        Files.write(file, new byte[1 << 20]);
+
+        new Mapping(TSRG, 0).save(file.toFile(), true);
+        assertEquals(SORTED, read(file.toFile()));
+
+        // No temporary files are left
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameMapping(Mapping expected, Mapping actual) {
+        assertEquals(expected.getClasses().keySet(), actual.getClasses().keySet());
+
+        for (Map.Entry<String, ClassMapping> entry : expected.getClasses().entrySet()) {
+            ClassMapping actualClass = actual.getByName(entry.getKey());
+            assertEquals(entry.getValue().getFields(), actualClass.getFields(), entry.getKey());
+            assertEquals(entry.getValue().getMethods(), actualClass.getMethods(), entry.getKey());
+        }
+    }
+}
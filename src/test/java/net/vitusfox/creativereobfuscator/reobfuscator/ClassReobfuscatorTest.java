@@ -0,0 +1,342 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Output of {@link ClassReobfuscator} in tree and streaming modes
+ */
+class ClassReobfuscatorTest implements Opcodes {
+
+    // Keeps class names, renames apply of functional interface to func_1
+    private static final Mapping MAPPING = new Mapping("net/minecraft/Fn net/minecraft/Fn\n\tapply ()V func_1\n", 0);
+    // Named -> obfuscated: net/minecraft/A -> a, health -> field_1, tick -> func_1
+    private static final Mapping ENTITY_MAPPING = new Mapping("a net/minecraft/A\n\tfield_1 health\n"
+            + "\tfunc_1 (Lnet/minecraft/A;I)V tick\n", Mapping.REVERSE_MAPPINGS);
+    private static final int[] MODES = {0, ClassReobfuscator.PRESERVE_FRAMES, ClassReobfuscator.EXACT_OWNERS,
+            ClassReobfuscator.PRESERVE_FRAMES | ClassReobfuscator.EXACT_OWNERS};
+    private static final Handle METAFACTORY = new Handle(H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory",
+            "metafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+            + "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)"
+            + "Ljava/lang/invoke/CallSite;", false);
+
+    @Test
+    void lambdaOfMappedInterface() {
+        byte[] bytecode = createLambda("net/minecraft/Fn");
+
+        for (int flags : new int[]{0, ClassReobfuscator.STREAMING}) {
+            byte[] reobfuscated = new ClassReobfuscator(MAPPING, flags | ClassReobfuscator.PRESERVE_FRAMES)
+                    .reobfuscate(bytecode);
+            assertEquals("func_1", invokeDynamicNames(reobfuscated).get(0));
+        }
+    }
+
+    @Test
+    void lambdaOfInheritingInterface() {
+        ClassHierarchy hierarchy = new ClassHierarchy(MAPPING, null, null);
+        hierarchy.addClass("mod/Fn", "java/lang/Object", new String[]{"net/minecraft/Fn"}, true);
+        byte[] bytecode = createLambda("mod/Fn");
+
+        for (int flags : new int[]{0, ClassReobfuscator.STREAMING}) {
+            byte[] reobfuscated = new ClassReobfuscator(MAPPING, flags | ClassReobfuscator.PRESERVE_FRAMES, hierarchy)
+                    .reobfuscate(bytecode);
+            // apply of mod/Fn implements mapped net/minecraft/Fn.apply
+            assertEquals("func_1", invokeDynamicNames(reobfuscated).get(0));
+        }
+    }
+
+    @Test
+    void otherBootstrapKeepsName() {
+        Handle bootstrap = new Handle(H_INVOKESTATIC, "mod/Bootstrap", "bootstrap", METAFACTORY.getDesc(), false);
+        byte[] bytecode = createInvokeDynamic("net/minecraft/Fn", bootstrap);
+
+        for (int flags : new int[]{ClassReobfuscator.ALWAYS_REWRITE, ClassReobfuscator.ALWAYS_REWRITE | ClassReobfuscator.STREAMING}) {
+            byte[] reobfuscated = new ClassReobfuscator(MAPPING, flags | ClassReobfuscator.PRESERVE_FRAMES)
+                    .reobfuscate(bytecode);
+            assertEquals("apply", invokeDynamicNames(reobfuscated).get(0));
+        }
+    }
+
+    @Test
+    void streamingEqualsTree() {
+        ClassHierarchy hierarchy = createHierarchy();
+
+        for (int flags : MODES) {
+            for (byte[] bytecode : new byte[][]{createMinecraftClass(), createEntity()}) {
+                byte[] tree = new ClassReobfuscator(ENTITY_MAPPING, flags, hierarchy).reobfuscate(bytecode);
+                byte[] streaming = new ClassReobfuscator(ENTITY_MAPPING, flags | ClassReobfuscator.STREAMING, hierarchy)
+                        .reobfuscate(bytecode);
+                assertEquals(dump(tree), dump(streaming), "flags " + flags);
+            }
+        }
+
+        String entity = dump(new ClassReobfuscator(ENTITY_MAPPING, ClassReobfuscator.STREAMING, hierarchy)
+                .reobfuscate(createEntity()));
+        assertTrue(entity.startsWith("mod/Entity extends a "), entity);
+        assertTrue(entity.contains("field target La;"), entity);
+        assertTrue(entity.contains("method func_1 (La;I)V"), entity);
+        assertTrue(entity.contains("#" + GETFIELD + " mod/Entity.field_1 F"), entity);
+        assertTrue(entity.contains("#" + INVOKESPECIAL + " a.func_1 (La;I)V"), entity);
+        assertFalse(entity.contains("net/minecraft/A"), entity);
+    }
+
+    @Test
+    void framesVerify() throws Exception {
+        ClassHierarchy hierarchy = createHierarchy();
+        String inputFrames = frames(createEntity()).replace("net/minecraft/A", "a");
+
+        for (int flags : MODES) {
+            for (int mode : new int[]{flags, flags | ClassReobfuscator.STREAMING}) {
+                ClassReobfuscator reobfuscator = new ClassReobfuscator(ENTITY_MAPPING, mode, hierarchy);
+                byte[] minecraft = reobfuscator.reobfuscate(createMinecraftClass());
+                byte[] entity = reobfuscator.reobfuscate(createEntity());
+
+                // Preserved frames are input frames with types renamed, computed ones have the same common superclass
+                assertEquals(inputFrames, frames(entity), "flags " + mode);
+
+                // Wrong frame fails verification when class is linked
+                DefiningLoader loader = new DefiningLoader();
+                loader.define("a", minecraft);
+                Class<?> entityClass = loader.define("mod.Entity", entity);
+                Object instance = entityClass.getConstructor().newInstance();
+                Method run = entityClass.getMethod("run", boolean.class);
+                assertSame(entityClass, run.invoke(instance, true).getClass());
+                assertEquals("a", run.invoke(instance, false).getClass().getName());
+            }
+        }
+    }
+
+    /// Class net/minecraft/A with field health and method tick
+    private static byte[] createMinecraftClass() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC | ACC_SUPER, "net/minecraft/A", null, "java/lang/Object", null);
+        writer.visitField(ACC_PUBLIC, "health", "F", null, null).visitEnd();
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        method = writer.visitMethod(ACC_PUBLIC, "tick", "(Lnet/minecraft/A;I)V", null, null);
+        method.visitCode();
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /// Class mod/Entity extending net/minecraft/A: overrides tick, reads inherited field, has branches merging
+    /// mod/Entity and net/minecraft/A, so it has stack map frame with mapped type
+    private static byte[] createEntity() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "net/minecraft/A";
+            }
+        };
+        writer.visit(V1_8, ACC_PUBLIC | ACC_SUPER, "mod/Entity", null, "net/minecraft/A", null);
+        writer.visitField(ACC_PUBLIC, "target", "Lnet/minecraft/A;", null, null).visitEnd();
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitMethodInsn(INVOKESPECIAL, "net/minecraft/A", "<init>", "()V", false);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        method = writer.visitMethod(ACC_PUBLIC, "tick", "(Lnet/minecraft/A;I)V", null, null);
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, "mod/Entity", "health", "F");
+        method.visitInsn(POP);
+        method.visitVarInsn(ALOAD, 0);
+        method.visitVarInsn(ALOAD, 1);
+        method.visitVarInsn(ILOAD, 2);
+        method.visitMethodInsn(INVOKESPECIAL, "net/minecraft/A", "tick", "(Lnet/minecraft/A;I)V", false);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        // Local 2 is mod/Entity or net/minecraft/A, returned without cast, so frame must have their common superclass
+        method = writer.visitMethod(ACC_PUBLIC, "run", "(Z)Lnet/minecraft/A;", null, null);
+        method.visitCode();
+        Label other = new Label();
+        Label end = new Label();
+        method.visitVarInsn(ILOAD, 1);
+        method.visitJumpInsn(IFEQ, other);
+        method.visitTypeInsn(NEW, "mod/Entity");
+        method.visitInsn(DUP);
+        method.visitMethodInsn(INVOKESPECIAL, "mod/Entity", "<init>", "()V", false);
+        method.visitVarInsn(ASTORE, 2);
+        method.visitJumpInsn(GOTO, end);
+        method.visitLabel(other);
+        method.visitTypeInsn(NEW, "net/minecraft/A");
+        method.visitInsn(DUP);
+        method.visitMethodInsn(INVOKESPECIAL, "net/minecraft/A", "<init>", "()V", false);
+        method.visitVarInsn(ASTORE, 2);
+        method.visitLabel(end);
+        method.visitLdcInsn(Type.getObjectType("net/minecraft/A"));
+        method.visitInsn(POP);
+        method.visitVarInsn(ALOAD, 2);
+        method.visitInsn(ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static ClassHierarchy createHierarchy() {
+        ClassHierarchy hierarchy = new ClassHierarchy(ENTITY_MAPPING, null, null);
+        hierarchy.addClass(createMinecraftClass());
+        hierarchy.addClass(createEntity());
+        return hierarchy;
+    }
+
+    /// Text of class members and instructions, labels are numbered by position, so equal classes give equal text
+    /// regardless of constant pool order
+    static String dump(byte[] bytecode) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytecode).accept(node, 0);
+
+        StringBuilder text = new StringBuilder(node.name).append(" extends ").append(node.superName)
+                .append(" implements ").append(node.interfaces).append(" signature ").append(node.signature).append('\n');
+        for (FieldNode field : node.fields) {
+            text.append("field ").append(field.name).append(' ').append(field.desc).append(' ').append(field.signature)
+                    .append('\n');
+        }
+
+        for (MethodNode method : node.methods) {
+            text.append("method ").append(method.name).append(' ').append(method.desc).append(' ').append(method.signature)
+                    .append(" maxs ").append(method.maxStack).append(' ').append(method.maxLocals).append('\n');
+            List<AbstractInsnNode> instructions = Arrays.asList(method.instructions.toArray());
+            for (AbstractInsnNode insn : instructions) {
+                text.append("  ").append(dump(insn, instructions)).append('\n');
+            }
+        }
+
+        return text.toString();
+    }
+
+    private static String frames(byte[] bytecode) {
+        StringBuilder frames = new StringBuilder();
+        for (String line : dump(bytecode).split("\n")) {
+            if (line.contains("FRAME ")) {
+                frames.append(line).append('\n');
+            }
+        }
+
+        return frames.toString();
+    }
+
+    private static String dump(AbstractInsnNode insn, List<AbstractInsnNode> instructions) {
+        String opcode = "#" + insn.getOpcode();
+        if (insn instanceof LabelNode) {
+            return "L" + instructions.indexOf(insn);
+        } else if (insn instanceof LineNumberNode) {
+            return "LINE " + ((LineNumberNode) insn).line;
+        } else if (insn instanceof FrameNode) {
+            FrameNode frame = (FrameNode) insn;
+            return "FRAME " + frame.type + " " + frame.local + " " + frame.stack;
+        } else if (insn instanceof FieldInsnNode) {
+            FieldInsnNode field = (FieldInsnNode) insn;
+            return opcode + " " + field.owner + "." + field.name + " " + field.desc;
+        } else if (insn instanceof MethodInsnNode) {
+            MethodInsnNode method = (MethodInsnNode) insn;
+            return opcode + " " + method.owner + "." + method.name + " " + method.desc;
+        } else if (insn instanceof TypeInsnNode) {
+            return opcode + " " + ((TypeInsnNode) insn).desc;
+        } else if (insn instanceof LdcInsnNode) {
+            return opcode + " " + ((LdcInsnNode) insn).cst;
+        } else if (insn instanceof InvokeDynamicInsnNode) {
+            InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode) insn;
+            return opcode + " " + indy.name + " " + indy.desc + " " + indy.bsm + " " + Arrays.toString(indy.bsmArgs);
+        } else if (insn instanceof JumpInsnNode) {
+            return opcode + " L" + instructions.indexOf(((JumpInsnNode) insn).label);
+        } else if (insn instanceof VarInsnNode) {
+            return opcode + " " + ((VarInsnNode) insn).var;
+        }
+
+        return opcode;
+    }
+
+    /// Class mod/User creating lambda of given functional interface with method apply()V
+    private static byte[] createLambda(String functionalInterface) {
+        return createInvokeDynamic(functionalInterface, METAFACTORY);
+    }
+
+    private static byte[] createInvokeDynamic(String functionalInterface, Handle bootstrap) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC, "mod/User", null, "java/lang/Object", null);
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        method.visitInvokeDynamicInsn("apply", "()L" + functionalInterface + ";", bootstrap, Type.getType("()V"),
+                new Handle(H_INVOKESTATIC, "mod/User", "lambda$run$0", "()V", false), Type.getType("()V"));
+        method.visitInsn(POP);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        method = writer.visitMethod(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, "lambda$run$0", "()V", null, null);
+        method.visitCode();
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static List<String> invokeDynamicNames(byte[] bytecode) {
+        List<String> names = new ArrayList<>();
+        new ClassReader(bytecode).accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(ASM9) {
+                    @Override
+                    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                                       Object... bootstrapMethodArguments) {
+                        names.add(name);
+                    }
+                };
+            }
+        }, 0);
+
+        return names;
+    }
+
+    /// Defines classes from bytes, so they are linked and verified
+    private static class DefiningLoader extends ClassLoader {
+
+        private DefiningLoader() {
+            super(ClassReobfuscatorTest.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ConstantPoolScanner} finds every class reobfuscation may change, and {@link ClassReobfuscator} skips
+ * only classes it does not change
+ */
+class ConstantPoolScannerTest implements Opcodes {
+
+    // Keeps class names, renames field_1 to health
+    private static final Mapping MEMBERS = new Mapping("net/minecraft/A net/minecraft/A\n\tfield_1 health\n", 0);
+    // Renames net/minecraft/A to a and health to field_1
+    private static final Mapping CLASSES = new Mapping("a net/minecraft/A\n\tfield_1 health\n", Mapping.REVERSE_MAPPINGS);
+
+    @Test
+    void memberThroughUnmappedSubclass() {
+        ClassHierarchy hierarchy = new ClassHierarchy(MEMBERS, null, null);
+        hierarchy.addClass("mod/Sub", "net/minecraft/A", new String[0], false);
+        byte[] bytecode = createClass(method -> {
+            method.visitInsn(ACONST_NULL);
+            method.visitFieldInsn(GETFIELD, "mod/Sub", "field_1", "I");
+            method.visitInsn(POP);
+        });
+
+        ConstantPoolScanner scanner = new ConstantPoolScanner(MEMBERS);
+        // Only owner is mod/Sub, mapped member is found through hierarchy
+        assertFalse(scanner.referencesMapping(new ClassReader(bytecode), null));
+        assertTrue(scanner.referencesMapping(new ClassReader(bytecode), hierarchy.getResolver(MEMBERS)));
+
+        ClassReobfuscator reobfuscator = new ClassReobfuscator(MEMBERS, ClassReobfuscator.PRESERVE_FRAMES, hierarchy);
+        byte[] reobfuscated = reobfuscator.reobfuscate(bytecode);
+        assertNotSame(bytecode, reobfuscated);
+        assertEquals("mod/Sub.health", fieldReferences(reobfuscated).get(0));
+    }
+
+    @Test
+    void arrayClassEntry() {
+        byte[] mapped = createClass(method -> {
+            method.visitInsn(ACONST_NULL);
+            method.visitTypeInsn(CHECKCAST, "[[Lnet/minecraft/A;");
+            method.visitInsn(POP);
+        });
+        byte[] unmapped = createClass(method -> {
+            method.visitInsn(ACONST_NULL);
+            method.visitTypeInsn(CHECKCAST, "[[Lmod/Other;");
+            method.visitInsn(POP);
+        });
+
+        ConstantPoolScanner scanner = new ConstantPoolScanner(MEMBERS);
+        assertTrue(scanner.referencesMapping(mapped));
+        assertFalse(scanner.referencesMapping(unmapped));
+    }
+
+    @Test
+    void longAndDoubleSlots() {
+        // Long and Double take two slots, mapped class entry is after them
+        byte[] mapped = createClass(method -> {
+            method.visitLdcInsn(1234567890123L);
+            method.visitInsn(POP2);
+            method.visitLdcInsn(3.5D);
+            method.visitInsn(POP2);
+            method.visitInsn(ACONST_NULL);
+            method.visitFieldInsn(GETFIELD, "net/minecraft/A", "field_1", "I");
+            method.visitInsn(POP);
+        });
+        byte[] unmapped = createClass(method -> {
+            method.visitLdcInsn(1234567890123L);
+            method.visitInsn(POP2);
+            method.visitLdcInsn(3.5D);
+            method.visitInsn(POP2);
+        });
+
+        for (Mapping mapping : new Mapping[]{MEMBERS, CLASSES}) {
+            ConstantPoolScanner scanner = new ConstantPoolScanner(mapping);
+            assertTrue(scanner.referencesMapping(mapped));
+            assertFalse(scanner.referencesMapping(unmapped));
+        }
+    }
+
+    @Test
+    void descriptorOnlyReference() {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC | ACC_ABSTRACT, "mod/Holder", null, "java/lang/Object", null);
+        writer.visitField(ACC_PUBLIC, "target", "Lnet/minecraft/A;", null, null).visitEnd();
+        writer.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "accept", "(Ljava/util/List;)V",
+                "(Ljava/util/List<Lnet/minecraft/A;>;)V", null).visitEnd();
+        writer.visitEnd();
+        byte[] bytecode = writer.toByteArray();
+
+        // No Class entry of net/minecraft/A, only Utf8 descriptor and signature
+        assertTrue(new ConstantPoolScanner(CLASSES).referencesMapping(bytecode));
+
+        byte[] reobfuscated = new ClassReobfuscator(CLASSES, ClassReobfuscator.PRESERVE_FRAMES).reobfuscate(bytecode);
+        assertNotSame(bytecode, reobfuscated);
+
+        List<String> descriptors = new ArrayList<>();
+        new ClassReader(reobfuscated).accept(new ClassVisitor(ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                descriptors.add(descriptor);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                descriptors.add(signature);
+                return null;
+            }
+        }, 0);
+        assertEquals("La;", descriptors.get(0));
+        assertEquals("(Ljava/util/List<La;>;)V", descriptors.get(1));
+    }
+
+    @Test
+    void lambdaOfMappedInterface() {
+        Handle metafactory = new Handle(H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                        + "Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)"
+                        + "Ljava/lang/invoke/CallSite;", false);
+        Handle implementation = new Handle(H_INVOKESTATIC, "mod/Test", "run", "()V", false);
+        byte[] mapped = createClass(method -> {
+            method.visitInvokeDynamicInsn("run", "()Lnet/minecraft/A;", metafactory, Type.getType("()V"),
+                    implementation, Type.getType("()V"));
+            method.visitInsn(POP);
+        });
+        byte[] inheriting = createClass(method -> {
+            method.visitInvokeDynamicInsn("run", "()Lmod/Sub;", metafactory, Type.getType("()V"),
+                    implementation, Type.getType("()V"));
+            method.visitInsn(POP);
+        });
+        byte[] unmapped = createClass(method -> {
+            method.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;", metafactory, Type.getType("()V"),
+                    implementation, Type.getType("()V"));
+            method.visitInsn(POP);
+        });
+
+        // Functional interface is only in descriptor of NameAndType entry, there is no Class entry of it
+        ClassHierarchy hierarchy = new ClassHierarchy(MEMBERS, null, null);
+        hierarchy.addClass("mod/Sub", "java/lang/Object", new String[]{"net/minecraft/A"}, true);
+        ConstantPoolScanner scanner = new ConstantPoolScanner(MEMBERS);
+        assertTrue(scanner.referencesMapping(mapped));
+        assertFalse(scanner.referencesMapping(new ClassReader(inheriting), null));
+        assertTrue(scanner.referencesMapping(new ClassReader(inheriting), hierarchy.getResolver(MEMBERS)));
+        assertFalse(scanner.referencesMapping(new ClassReader(unmapped), hierarchy.getResolver(MEMBERS)));
+    }
+
+    @Test
+    void libraryClassIsSkipped() {
+        byte[] bytecode = createClass(method -> {
+            method.visitLdcInsn(42L);
+            method.visitInsn(POP2);
+            method.visitTypeInsn(NEW, "java/util/ArrayList");
+            method.visitInsn(DUP);
+            method.visitMethodInsn(INVOKESPECIAL, "java/util/ArrayList", "<init>", "()V", false);
+            method.visitMethodInsn(INVOKEVIRTUAL, "java/util/ArrayList", "size", "()I", false);
+            method.visitInsn(POP);
+        });
+
+        for (Mapping mapping : new Mapping[]{MEMBERS, CLASSES}) {
+            assertFalse(new ConstantPoolScanner(mapping).referencesMapping(bytecode));
+            assertSame(bytecode, new ClassReobfuscator(mapping, ClassReobfuscator.PRESERVE_FRAMES).reobfuscate(bytecode));
+            assertSame(bytecode, new ClassReobfuscator(mapping, 0).reobfuscate(bytecode));
+        }
+    }
+
+    /// Class mod/Test with one method, its code is written by given consumer
+    private static byte[] createClass(Consumer<MethodVisitor> code) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC, "mod/Test", null, "java/lang/Object", null);
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        code.accept(method);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /// Field references of all methods, as owner.name
+    private static List<String> fieldReferences(byte[] bytecode) {
+        List<String> references = new ArrayList<>();
+        new ClassReader(bytecode).accept(new ClassVisitor(ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(ASM9) {
+                    @Override
+                    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                        references.add(owner + '.' + name);
+                    }
+                };
+            }
+        }, 0);
+
+        return references;
+    }
+}
@@ -0,0 +1,107 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Entry names and order of {@link JarReobfuscator} output
+ */
+class JarReobfuscatorTest implements Opcodes {
+
+    // Renames class net/minecraft/A to a
+    private static final Mapping MAPPING = new Mapping("a net/minecraft/A\n\tfield_1 health\n", Mapping.REVERSE_MAPPINGS);
+
+    @Test
+    void sortedByOutputName() throws IOException {
+        byte[] jar = createJar("z.txt", "net/minecraft/A.class", "META-INF/MANIFEST.MF", "b.txt");
+
+        for (int flags : new int[]{0, ClassReobfuscator.PRESERVE_FRAMES}) {
+            byte[] output = reobfuscate(jar, flags);
+            assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "a.class", "b.txt", "z.txt"), entryNames(output));
+            // Output does not depend on order of input
+            assertArrayEquals(output, reobfuscate(createJar("b.txt", "META-INF/MANIFEST.MF", "net/minecraft/A.class", "z.txt"), flags));
+        }
+    }
+
+    @Test
+    void outputNameCollision() throws IOException {
+        byte[] jar = createJar("a.class", "net/minecraft/A.class");
+
+        for (int flags : new int[]{0, ClassReobfuscator.PRESERVE_FRAMES}) {
+            ZipException e = assertThrows(ZipException.class, () -> reobfuscate(jar, flags));
+            assertEquals("Entries a.class and net/minecraft/A.class are both written as a.class", e.getMessage());
+        }
+    }
+
+    @Test
+    void duplicateInputEntry() throws IOException {
+        // ZipOutputStream does not write duplicates, so second name is replaced in bytes of zip
+        byte[] jar = createJar("x.txt", "net/minecraft/A.class", "y.txt");
+        byte[] name = "y.txt".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + name.length <= jar.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(jar, i, i + name.length), name)) {
+                jar[i] = 'x';
+            }
+        }
+
+        for (int flags : new int[]{0, ClassReobfuscator.PRESERVE_FRAMES}) {
+            ZipException e = assertThrows(ZipException.class, () -> reobfuscate(jar, flags));
+            assertEquals("Duplicate entry x.txt", e.getMessage());
+        }
+    }
+
+    private static byte[] reobfuscate(byte[] jar, int flags) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new JarReobfuscator(new ClassReobfuscator(MAPPING, flags), Runnable::run)
+                .reobfuscate(new ByteArrayInputStream(jar), output);
+        return output.toByteArray();
+    }
+
+    /// Entries ending with .class are classes of their path, other entries are text
+    private static byte[] createJar(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                if (name.endsWith(".class")) {
+                    ClassWriter writer = new ClassWriter(0);
+                    writer.visit(V1_8, ACC_PUBLIC, name.substring(0, name.length() - 6), null, "java/lang/Object", null);
+                    writer.visitEnd();
+                    zip.write(writer.toByteArray());
+                } else {
+                    zip.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static List<String> entryNames(byte[] jar) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(jar))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,106 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link MemberResolver} finds mapped names of members inherited from superclasses and interfaces, like JVM resolution
+ */
+class MemberResolverTest {
+
+    // Named -> obfuscated. Living maps tick itself, Tickable is interface implemented by Living
+    private static final Mapping MAPPING = new Mapping("a net/minecraft/Entity\n"
+            + "\tfield_1 health\n"
+            + "\tfunc_1 ()V tick\n"
+            + "\tfunc_2 (Lnet/minecraft/Entity;)V attack\n"
+            + "b net/minecraft/Living\n"
+            + "\tfunc_5 ()V tick\n"
+            + "c net/minecraft/Tickable\n"
+            + "\tfield_2 CONSTANT\n"
+            + "\tfunc_4 ()V update\n", Mapping.REVERSE_MAPPINGS).freeze();
+    private static final String[] NONE = new String[0];
+
+    private ClassHierarchy hierarchy;
+    private MemberResolver resolver;
+
+    @BeforeEach
+    void createHierarchy() {
+        hierarchy = new ClassHierarchy(MAPPING, null, null);
+        hierarchy.addClass("net/minecraft/Entity", ClassHierarchy.OBJECT, NONE, false);
+        hierarchy.addClass("net/minecraft/Living", "net/minecraft/Entity", new String[]{"net/minecraft/Tickable"}, false);
+        hierarchy.addClass("net/minecraft/Tickable", ClassHierarchy.OBJECT, NONE, true);
+        hierarchy.addClass("mod/Zombie", "net/minecraft/Living", NONE, false);
+        hierarchy.addClass("mod/Named", ClassHierarchy.OBJECT, new String[]{"net/minecraft/Tickable"}, true);
+        hierarchy.addClass("mod/Pet", ClassHierarchy.OBJECT, new String[]{"mod/Named"}, false);
+        hierarchy.addClass("mod/List", "java/util/AbstractList", NONE, false);
+        resolver = hierarchy.getResolver(MAPPING);
+    }
+
+    @Test
+    void inheritedMembers() {
+        assertEquals("field_1", resolver.resolveField("mod/Zombie", "health"));
+        assertEquals("func_2", resolver.resolveMethod("mod/Zombie", "attack", "(Lnet/minecraft/Entity;)V"));
+        assertEquals("func_1", resolver.resolveMethod("net/minecraft/Entity", "tick", "()V"));
+
+        // Descriptor is part of method
+        assertNull(resolver.resolveMethod("mod/Zombie", "attack", "(La;)V"));
+        assertNull(resolver.resolveMethod("mod/Zombie", "health", "()V"));
+        assertNull(resolver.resolveField("mod/Zombie", "tick"));
+        assertNull(resolver.resolveField("mod/Unknown", "health"));
+    }
+
+    @Test
+    void overriddenMember() {
+        // Nearest mapping wins, as the JVM selects nearest declaration
+        assertEquals("func_5", resolver.resolveMethod("net/minecraft/Living", "tick", "()V"));
+        assertEquals("func_5", resolver.resolveMethod("mod/Zombie", "tick", "()V"));
+    }
+
+    @Test
+    void interfaceMembers() {
+        assertEquals("func_4", resolver.resolveMethod("mod/Zombie", "update", "()V"));
+        assertEquals("func_4", resolver.resolveMethod("mod/Pet", "update", "()V"));
+        assertEquals("field_2", resolver.resolveField("mod/Pet", "CONSTANT"));
+        assertEquals("field_2", resolver.resolveField("mod/Zombie", "CONSTANT"));
+    }
+
+    @Test
+    void supertypes() {
+        assertTrue(resolver.inheritsMapping("net/minecraft/Entity"));
+        assertTrue(resolver.inheritsMapping("mod/Zombie"));
+        assertTrue(resolver.inheritsMapping("mod/Pet"));
+        assertFalse(resolver.inheritsMapping("mod/List"));
+        assertFalse(resolver.inheritsMapping("mod/Unknown"));
+
+        assertFalse(resolver.extendsUnmapped("net/minecraft/Living"));
+        assertTrue(resolver.extendsUnmapped("mod/List"));
+        assertTrue(resolver.extendsUnmapped("mod/Pet")); // mod/Named is not mapped
+    }
+
+    @Test
+    void resultsDroppedWhenHierarchyChanges() {
+        assertNull(resolver.resolveField("mod/Late", "health"));
+        assertFalse(resolver.inheritsMapping("mod/Late"));
+
+        long generation = hierarchy.getGeneration();
+        hierarchy.addClass("mod/Late", "net/minecraft/Entity", NONE, false);
+        assertNotEquals(generation, hierarchy.getGeneration());
+
+        assertEquals("field_1", resolver.resolveField("mod/Late", "health"));
+        assertTrue(resolver.inheritsMapping("mod/Late"));
+        assertSame(resolver, hierarchy.getResolver(MAPPING));
+    }
+
+    @Test
+    void cyclicHierarchy() {
+        hierarchy.addClass("mod/First", "mod/Second", NONE, false);
+        hierarchy.addClass("mod/Second", "mod/First", NONE, false);
+
+        assertNull(resolver.resolveField("mod/First", "health"));
+        assertNull(resolver.resolveMethod("mod/First", "tick", "()V"));
+        assertFalse(resolver.inheritsMapping("mod/First"));
+    }
+}
@@ -0,0 +1,214 @@
+package net.vitusfox.creativereobfuscator.reobfuscator;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keys, eviction and counters of {@link ReobfuscationCache}, and its use by {@link JarReobfuscator}
+ */
+class ReobfuscationCacheTest implements Opcodes {
+
+    private static final Mapping MAPPING = new Mapping("net/minecraft/A net/minecraft/A\n\tfield_1 health\n", 0).freeze();
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("reobfuscation-cache");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void keyIsStable() throws Exception {
+        byte[] bytecode = {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 1, 2, 3};
+        byte[] context = {4, 5};
+
+        // SHA-256 of version, context and class, as lowercase hex. Changing it invalidates caches of all users
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) ReobfuscationCache.VERSION);
+        digest.update(context);
+        digest.update(bytecode);
+        StringBuilder expected = new StringBuilder();
+        for (byte b : digest.digest()) {
+            expected.append(String.format("%02x", b));
+        }
+
+        String key = ReobfuscationCache.key(bytecode, context);
+        assertEquals(expected.toString(), key);
+        assertEquals(key, ReobfuscationCache.key(bytecode.clone(), context.clone()));
+        assertNotEquals(key, ReobfuscationCache.key(bytecode, new byte[]{4, 6}));
+        assertNotEquals(key, ReobfuscationCache.key(Arrays.copyOf(bytecode, 8), context));
+    }
+
+    @Test
+    void hitsAndMisses() throws IOException {
+        ReobfuscationCache cache = new ReobfuscationCache(directory.toFile());
+        byte[] bytecode = createClass("test/C", 100);
+        String key = ReobfuscationCache.key(bytecode, new byte[0]);
+
+        assertNull(cache.get(key));
+        cache.put(key, bytecode);
+        assertArrayEquals(bytecode, cache.get(key));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(bytecode.length, cache.getSize());
+
+        // Broken entry is a miss and is deleted
+        Path entry = directory.resolve(key.substring(0, 2)).resolve(key + ReobfuscationCache.EXTENSION);
+        Files.write(entry, new byte[]{1, 2, 3});
+        assertNull(cache.get(key));
+        assertFalse(Files.exists(entry));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Size of existing entries is counted by new cache, temporary files are not left
+        cache.put(key, bytecode);
+        assertEquals(bytecode.length, new ReobfuscationCache(directory.toFile()).getSize());
+        try (Stream<Path> files = Files.list(entry.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void evictionToNinetyPercent() throws IOException {
+        byte[][] classes = new byte[11][];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = createClass("test/C" + (char) ('A' + i), 0);
+        }
+        // All classes have the same size, ten of them fit
+        int entrySize = classes[0].length;
+        ReobfuscationCache cache = new ReobfuscationCache(directory.toFile(), entrySize * 10L);
+
+        String[] keys = new String[classes.length];
+        for (int i = 0; i < 10; i++) {
+            keys[i] = ReobfuscationCache.key(classes[i], new byte[0]);
+            cache.put(keys[i], classes[i]);
+            // Entry 0 is the least recently used
+            Path entry = directory.resolve(keys[i].substring(0, 2)).resolve(keys[i] + ReobfuscationCache.EXTENSION);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+        assertEquals(0, cache.getEvictions());
+        assertEquals(entrySize * 10L, cache.getSize());
+
+        keys[10] = ReobfuscationCache.key(classes[10], new byte[0]);
+        cache.put(keys[10], classes[10]);
+
+        // 11 entries are trimmed to 9, not to 10
+        assertEquals(2, cache.getEvictions());
+        assertEquals(entrySize * 9L, cache.getSize());
+        assertNull(cache.get(keys[0]));
+        assertNull(cache.get(keys[1]));
+        for (int i = 2; i < keys.length; i++) {
+            assertNotNull(cache.get(keys[i]), "Entry " + i);
+        }
+    }
+
+    @Test
+    void jarReport() throws IOException {
+        byte[] jar = createJar();
+        ClassReobfuscator reobfuscator = new ClassReobfuscator(MAPPING, 0);
+        ReobfuscationCache cache = new ReobfuscationCache(directory.toFile());
+        JarReobfuscator jarReobfuscator = new JarReobfuscator(reobfuscator, Runnable::run, cache);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        JarReobfuscationReport report = jarReobfuscator.reobfuscate(new ByteArrayInputStream(jar), first);
+        assertEquals(0, report.getCacheHits());
+        assertEquals(3, report.getCacheMisses());
+        assertEquals(0, report.getCacheWriteFailures());
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        report = jarReobfuscator.reobfuscate(new ByteArrayInputStream(jar), second);
+        assertEquals(3, report.getCacheHits());
+        assertEquals(0, report.getCacheMisses());
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+
+        // Subdirectories of entries can not be created, classes are still written
+        Path blocked = Files.createTempDirectory("reobfuscation-cache-blocked");
+        try {
+            ReobfuscationCache broken = new ReobfuscationCache(blocked.toFile());
+            for (int i = 0; i < 256; i++) {
+                Files.write(blocked.resolve(String.format("%02x", i)), new byte[0]);
+            }
+
+            ByteArrayOutputStream third = new ByteArrayOutputStream();
+            report = new JarReobfuscator(reobfuscator, Runnable::run, broken)
+                    .reobfuscate(new ByteArrayInputStream(jar), third);
+            assertEquals(3, report.getCacheMisses());
+            assertEquals(3, report.getCacheWriteFailures());
+            assertTrue(report.toString().contains("3 cache entries not written"), report.toString());
+            assertArrayEquals(first.toByteArray(), third.toByteArray());
+        } finally {
+            try (Stream<Path> paths = Files.walk(blocked)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /// Class referencing mapped field, with constants of given total length to change its size
+    private static byte[] createClass(String name, int padding) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        MethodVisitor method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        method.visitCode();
+        method.visitInsn(ACONST_NULL);
+        method.visitFieldInsn(GETFIELD, "net/minecraft/A", "field_1", "I");
+        method.visitInsn(POP);
+        if (padding > 0) {
+            char[] chars = new char[padding];
+            Arrays.fill(chars, 'x');
+            method.visitLdcInsn(new String(chars));
+            method.visitInsn(POP);
+        }
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static byte[] createJar() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < 3; i++) {
+                zip.putNextEntry(new ZipEntry("test/C" + i + ".class"));
+                zip.write(createClass("test/C" + i, i));
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry("data.txt"));
+            zip.write(new byte[]{1, 2, 3});
+            zip.closeEntry();
+        }
+
+        return bytes.toByteArray();
+    }
+}
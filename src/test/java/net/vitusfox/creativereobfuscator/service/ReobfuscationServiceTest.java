@@ -0,0 +1,312 @@
+package net.vitusfox.creativereobfuscator.service;
+
+import net.vitusfox.creativereobfuscator.mapping.Mapping;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassHierarchy;
+import net.vitusfox.creativereobfuscator.reobfuscator.ClassReobfuscator;
+import net.vitusfox.creativereobfuscator.reobfuscator.JarReobfuscationReport;
+import net.vitusfox.creativereobfuscator.reobfuscator.ReobfuscatorHandler;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scheduling of {@link ReobfuscationService}: permits, round-robin of requests, backpressure and cancellation
+ */
+class ReobfuscationServiceTest {
+
+    private static final Mapping MAPPING = new Mapping("net/minecraft/A net/minecraft/A\n\tfield_1 health\n", 0).freeze();
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void permitsAfterCancellation() throws Exception {
+        GatedExecutor executor = new GatedExecutor();
+        ReobfuscationService service = createService(executor, new ClassReobfuscator(MAPPING, 0), 1, 2, 100);
+
+        // Worker is held, so classes stay queued
+        CompletableFuture<List<byte[]>> future = service.submitClasses(createClasses("test/C", 10));
+        awaitEquals(10, service::getQueuedClasses);
+        assertEquals(90, service.getFreeQueueSlots());
+        assertEquals(1, service.getFreeRequestSlots());
+
+        assertTrue(future.cancel(true));
+        awaitEquals(0, service::getActiveRequests);
+        assertEquals(0, service.getQueuedClasses());
+        assertEquals(100, service.getFreeQueueSlots());
+        assertEquals(2, service.getFreeRequestSlots());
+
+        // Service still works after released worker finds queue empty
+        executor.open();
+        assertEquals(3, service.submitClasses(createClasses("test/D", 3)).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).size());
+        awaitEquals(0, service::getActiveRequests);
+        assertEquals(100, service.getFreeQueueSlots());
+        assertEquals(2, service.getFreeRequestSlots());
+        service.close();
+    }
+
+    @Test
+    void permitsAfterFailure() throws Exception {
+        ReobfuscationService service = createService(new GatedExecutor().open(), new ClassReobfuscator(MAPPING, 0), 2, 2, 100);
+
+        List<byte[]> classes = createClasses("test/C", 20);
+        classes.add(10, new byte[]{1, 2, 3});
+        CompletableFuture<List<byte[]>> broken = service.submitClasses(classes);
+        assertThrows(ExecutionException.class, () -> broken.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Broken input");
+            }
+        };
+        CompletableFuture<?> brokenJar = service.submitJar(failing, new ByteArrayOutputStream());
+        assertThrows(ExecutionException.class, () -> brokenJar.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        awaitEquals(0, service::getActiveRequests);
+        awaitEquals(100, service::getFreeQueueSlots);
+        assertEquals(0, service.getQueuedClasses());
+        assertEquals(2, service.getFreeRequestSlots());
+        service.close();
+    }
+
+    @Test
+    void hugeRequestDoesNotStarveSmallOne() throws Exception {
+        AtomicInteger huge = new AtomicInteger();
+        AtomicInteger small = new AtomicInteger();
+        AtomicInteger hugeBeforeSmallDone = new AtomicInteger(-1);
+        ClassReobfuscator reobfuscator = new ClassReobfuscator(MAPPING, 0, new ClassHierarchy(MAPPING),
+                new ReobfuscatorHandler() {
+                    @Override
+                    public void onClassSkipped(String className) {
+                        if (className.startsWith("huge/")) {
+                            huge.incrementAndGet();
+                        } else if (small.incrementAndGet() == 2) {
+                            hugeBeforeSmallDone.set(huge.get());
+                        }
+                    }
+                });
+
+        GatedExecutor executor = new GatedExecutor();
+        ReobfuscationService service = createService(executor, reobfuscator, 1, 4, 4096);
+
+        // Huge request is queued first, then worker is released
+        CompletableFuture<List<byte[]>> hugeFuture = service.submitClasses(createClasses("huge/C", 1000));
+        awaitEquals(1000, service::getQueuedClasses);
+        CompletableFuture<List<byte[]>> smallFuture = service.submitClasses(createClasses("small/C", 2));
+        awaitEquals(1002, service::getQueuedClasses);
+        executor.open();
+
+        assertEquals(2, smallFuture.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).size());
+        assertEquals(1000, hugeFuture.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).size());
+        // Requests are taken in turn, FIFO queue would reobfuscate all 1000 classes first
+        assertTrue(hugeBeforeSmallDone.get() >= 0 && hugeBeforeSmallDone.get() <= 2,
+                "Huge request classes before small request was done: " + hugeBeforeSmallDone.get());
+        service.close();
+    }
+
+    @Test
+    void submitBlocksAtMaxRequests() throws Exception {
+        ReobfuscationService service = createService(new GatedExecutor().open(), new ClassReobfuscator(MAPPING, 0), 1, 1, 100);
+
+        PipedOutputStream pipe = new PipedOutputStream();
+        CompletableFuture<?> blocked = service.submitJar(new PipedInputStream(pipe), new ByteArrayOutputStream());
+
+        AtomicReference<CompletableFuture<List<byte[]>>> second = new AtomicReference<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                second.set(service.submitClasses(createClasses("test/C", 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+
+        awaitEquals(Thread.State.WAITING.ordinal(), () -> submitter.getState().ordinal());
+        assertEquals(0, service.getFreeRequestSlots());
+        assertNull(second.get());
+
+        blocked.cancel(true);
+        submitter.join(TIMEOUT_MILLIS);
+        assertFalse(submitter.isAlive());
+        assertEquals(1, second.get().get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).size());
+
+        awaitEquals(0, service::getActiveRequests);
+        assertEquals(1, service.getFreeRequestSlots());
+        pipe.close();
+        service.close();
+    }
+
+    @Test
+    void cancelInterruptDoesNotLeak() throws Exception {
+        AtomicBoolean leaked = new AtomicBoolean();
+        AtomicInteger running = new AtomicInteger();
+        // Like pooled thread, but interrupt status left by task is checked instead of cleared
+        Executor executor = task -> {
+            running.incrementAndGet();
+            Thread thread = new Thread(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (Thread.interrupted()) {
+                        leaked.set(true);
+                    }
+                    running.decrementAndGet();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        };
+        ReobfuscationService service = createService(executor, new ClassReobfuscator(MAPPING, 0), 2, 4, 100);
+
+        List<PipedOutputStream> pipes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            PipedOutputStream pipe = new PipedOutputStream();
+            pipes.add(pipe);
+            CompletableFuture<?> future = service.submitJar(new PipedInputStream(pipe), new ByteArrayOutputStream());
+
+            // Cancelled before reading starts, while reading or while waiting for workers
+            if (i % 3 == 1) {
+                Thread.sleep(1);
+            } else if (i % 3 == 2) {
+                CompletableFuture<?> classes = service.submitClasses(createClasses("test/C" + i + "_", 50));
+                classes.cancel(true);
+            }
+
+            future.cancel(true);
+        }
+
+        awaitEquals(0, service::getActiveRequests);
+        awaitEquals(0, running::get);
+        assertFalse(leaked.get(), "Interrupt of cancelled request leaked to executor thread");
+        assertEquals(4, service.getFreeRequestSlots());
+        assertEquals(100, service.getFreeQueueSlots());
+
+        for (PipedOutputStream pipe : pipes) {
+            pipe.close();
+        }
+        service.close();
+    }
+
+    @Test
+    void jarLargerThanLimit() throws Exception {
+        ReobfuscationService service = ReobfuscationService.builder()
+                .mapping(ReobfuscationService.DEFAULT_MAPPING, new ClassReobfuscator(MAPPING, 0))
+                .executor(new GatedExecutor().open())
+                .maxJarSize(64 * 1024)
+                .build();
+
+        // Zeros are compressed to few bytes, limit is checked on uncompressed size
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bomb)) {
+            for (int i = 0; i < 4; i++) {
+                zip.putNextEntry(new ZipEntry("data" + i + ".bin"));
+                zip.write(new byte[20 * 1024]);
+                zip.closeEntry();
+            }
+        }
+        assertTrue(bomb.size() < 64 * 1024);
+
+        CompletableFuture<?> large = service.submitJar(new ByteArrayInputStream(bomb.toByteArray()), new ByteArrayOutputStream());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> large.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(e.getCause() instanceof ZipException);
+        assertEquals("JAR is larger than 65536 bytes uncompressed, at entry data3.bin", e.getCause().getMessage());
+
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(small)) {
+            zip.putNextEntry(new ZipEntry("data.bin"));
+            zip.write(new byte[60 * 1024]);
+            zip.closeEntry();
+        }
+        CompletableFuture<JarReobfuscationReport> report = service.submitJar(new ByteArrayInputStream(small.toByteArray()),
+                new ByteArrayOutputStream());
+        assertEquals(60 * 1024, report.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getTotalBytes());
+
+        awaitEquals(0, service::getActiveRequests);
+        assertEquals(ReobfuscationService.DEFAULT_MAX_REQUESTS, service.getFreeRequestSlots());
+        service.close();
+    }
+
+    private static ReobfuscationService createService(Executor executor, ClassReobfuscator reobfuscator, int parallelism,
+                                                      int maxRequests, int maxQueuedClasses) {
+        return ReobfuscationService.builder()
+                .mapping(ReobfuscationService.DEFAULT_MAPPING, reobfuscator)
+                .executor(executor)
+                .parallelism(parallelism)
+                .maxRequests(maxRequests)
+                .maxQueuedClasses(maxQueuedClasses)
+                .build();
+    }
+
+    /// Empty classes referencing nothing mapped
+    private static List<byte[]> createClasses(String prefix, int count) {
+        List<byte[]> classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ClassWriter writer = new ClassWriter(0);
+            writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, prefix + i, null, "java/lang/Object", null);
+            writer.visitEnd();
+            classes.add(writer.toByteArray());
+        }
+
+        return classes;
+    }
+
+    private static void awaitEquals(int expected, IntSupplier actual) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (actual.getAsInt() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    /// Runs tasks in new threads. Tasks executed by other threads than test (workers started by requests) are held until open
+    private static class GatedExecutor implements Executor {
+
+        private final Thread owner = Thread.currentThread();
+        private final List<Runnable> held = new ArrayList<>();
+        private boolean open;
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (!open && Thread.currentThread() != owner) {
+                    held.add(task);
+                    return;
+                }
+            }
+
+            start(task);
+        }
+
+        private GatedExecutor open() {
+            List<Runnable> tasks;
+            synchronized (this) {
+                open = true;
+                tasks = new ArrayList<>(held);
+                held.clear();
+            }
+
+            tasks.forEach(GatedExecutor::start);
+            return this;
+        }
+
+        private static void start(Runnable task) {
+            Thread thread = new Thread(task);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}